@@ -0,0 +1,253 @@
+package task.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writer thread appending values passed through the ring buffer to the Store.
+ * Producers claim slots of the ring without locking, the writer takes all the values published so far and appends them as one batch.
+ * Values may be encoded by the pool of encoding threads in parallel, a slot is published once its value is encoded,
+ * so the writer still appends values in the order their slots are claimed.
+ * 
+ * @author Fedor Trofimov
+ * @param <T> The type of a value in the Store
+ */
+class AsyncAppender<T extends Serializable> {
+
+	private static final int RING_CAPACITY = 1 << 14;
+	private static final int MAX_BATCH_SIZE = 1 << 10;
+	private static final long WAIT_TIMEOUT = 10; // ms
+
+	private final Store<T> store;
+	private final Codec<T> codec;
+	private final ExecutorService encoders;
+	private final RingBuffer<Slot<T>> ring = new RingBuffer<>(RING_CAPACITY, Slot::new);
+	private final AtomicInteger producers = new AtomicInteger();
+	private final Thread writer;
+	private volatile boolean closed;
+	private volatile boolean stopped;
+
+	/**
+	 * Constructs the appender and starts its writer thread
+	 * @param store - Store the values are appended to
+	 * @param codec - codec of the Store
+	 * @param encodingThreads - number of threads encoding values, 0 if values are encoded by the writer thread
+	 */
+	AsyncAppender(Store<T> store, Codec<T> codec, int encodingThreads) {
+		this.store = store;
+		this.codec = codec;
+		if (encodingThreads > 0) {
+			AtomicInteger threadNumber = new AtomicInteger();
+			encoders = Executors.newFixedThreadPool(encodingThreads, runnable -> {
+				Thread thread = new Thread(runnable, "store-encoder-" + threadNumber.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			encoders = null;
+		}
+		writer = new Thread(this::write, "store-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Passes the value to be appended to the writer, waits for a free slot if the ring is full
+	 * @param key - key with which the specified value is to be associated
+	 * @param value - value to be associated with the specified key
+	 * @return future completed when the value is appended
+	 */
+	CompletableFuture<Void> append(String key, T value) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		producers.incrementAndGet();
+		try {
+			if (closed) {
+				future.completeExceptionally(new IllegalStateException("The Store is closed"));
+				return future;
+			}
+			long sequence = ring.claim();
+			Slot<T> slot = ring.get(sequence);
+			slot.key = key;
+			slot.value = value;
+			slot.future = future;
+			if (encoders != null)
+				encoders.execute(() -> encode(sequence, slot));
+			else
+				ring.publish(sequence);
+		} finally {
+			producers.decrementAndGet();
+		}
+		return future;
+	}
+
+	/**
+	 * Appends the published values and stops the writer thread
+	 */
+	void close() {
+		closed = true;
+		// producers which have passed the check publish their values
+		while (producers.get() > 0)
+			Thread.yield();
+		if (encoders != null) {
+			encoders.shutdown();
+			try {
+				while (!encoders.awaitTermination(1, TimeUnit.SECONDS))
+					;
+			} catch (InterruptedException exc) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		stopped = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Encodes the value of the slot and publishes it
+	 * @param sequence - sequence of the slot
+	 * @param slot - slot of the value
+	 */
+	private void encode(long sequence, Slot<T> slot) {
+		encode(slot);
+		ring.publish(sequence);
+	}
+
+	/**
+	 * Encodes the value of the slot into its data, the failure of encoding is kept in the slot
+	 * @param slot - slot of the value
+	 */
+	private void encode(Slot<T> slot) {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			codec.encode(slot.value, out);
+			slot.data = out.toByteArray();
+		} catch (IOException | RuntimeException exc) {
+			slot.failure = exc;
+		}
+	}
+
+	/**
+	 * Loop of the writer thread
+	 */
+	private void write() {
+		List<Slot<T>> batch = new ArrayList<>(MAX_BATCH_SIZE);
+		while (true) {
+			int count = ring.drain(batch, MAX_BATCH_SIZE);
+			if (count == 0) {
+				if (stopped && ring.isDrained())
+					return;
+				ring.await(WAIT_TIMEOUT);
+				continue;
+			}
+			append(batch);
+			for (Slot<T> slot : batch)
+				slot.clear();
+			ring.release(count);
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Appends the batch of values and completes their futures.
+	 * The values not encoded by the encoding threads are encoded one by one first, so a value which can't be encoded
+	 * fails only its own future.
+	 * @param batch - published values
+	 */
+	private void append(List<Slot<T>> batch) {
+		if (encoders == null) {
+			for (Slot<T> slot : batch)
+				encode(slot);
+		}
+		appendEncoded(batch);
+	}
+
+	/**
+	 * Appends the batch of encoded values and completes their futures
+	 * @param batch - published values
+	 */
+	private void appendEncoded(List<Slot<T>> batch) {
+		List<Map.Entry<String, byte[]>> entries = new ArrayList<>(batch.size());
+		List<Slot<T>> encoded = new ArrayList<>(batch.size());
+		for (Slot<T> slot : batch) {
+			if (slot.failure != null) {
+				slot.future.completeExceptionally(new RuntimeException(slot.failure));
+			} else {
+				entries.add(new AbstractMap.SimpleImmutableEntry<>(slot.key, slot.data));
+				encoded.add(slot);
+			}
+		}
+		try {
+			store.appendEncodedBatch(entries);
+		} catch (Store.RejectedKeyException exc) {
+			// some key is rejected before the batch is written, the values are appended one by one to reject only it
+			for (Slot<T> slot : encoded) {
+				try {
+					store.appendEncoded(slot.key, ByteBuffer.wrap(slot.data));
+					slot.future.complete(null);
+				} catch (RuntimeException e) {
+					slot.future.completeExceptionally(e);
+				}
+			}
+			return;
+		} catch (RuntimeException exc) {
+			for (Slot<T> slot : encoded)
+				slot.future.completeExceptionally(exc);
+			return;
+		}
+		for (Slot<T> slot : encoded)
+			slot.future.complete(null);
+	}
+
+	/**
+	 * Reusable slot of the ring holding the value with the future of its append
+	 */
+	private static class Slot<T> implements Map.Entry<String, T> {
+
+		private String key;
+		private T value;
+		private CompletableFuture<Void> future;
+		private byte[] data;
+		private Exception failure;
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public T getValue() {
+			return value;
+		}
+
+		@Override
+		public T setValue(T value) {
+			throw new UnsupportedOperationException();
+		}
+
+		void clear() {
+			key = null;
+			value = null;
+			future = null;
+			data = null;
+			failure = null;
+		}
+
+	}
+
+}
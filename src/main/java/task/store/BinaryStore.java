@@ -0,0 +1,108 @@
+package task.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Appendable-only Store of opaque byte arrays persisted on a disk.
+ * The bytes are written into the data files verbatim and returned as they are, without any Java serialization.
+ * 
+ * @author Fedor Trofimov
+ */
+public class BinaryStore implements AppendableStore<byte[]> {
+
+	private Store<byte[]> store;
+
+	/**
+	 * Constructs this Store persisted on a disk in the specified FS directory
+	 * @param directory - directory where placed index and data files of this Store, the directory must be existed
+	 */
+	public BinaryStore(String directory) {
+		this(directory, new StoreConfig());
+	}
+
+	/**
+	 * Constructs this Store persisted on a disk in the specified FS directory
+	 * @param directory - directory where placed index and data files of this Store, the directory must be existed
+	 * @param config - settings of this Store, the class dictionary isn't applicable
+	 */
+	public BinaryStore(String directory, StoreConfig config) {
+		store = new Store<>(directory, Codecs.BYTES, config);
+	}
+
+	/**
+	 * Puts the bytes into this Store with the associated key.
+	 * 
+	 * @param key - key with which the specified value is to be associated
+	 * @param value - bytes to be associated with the specified key
+	 */
+	public void append(String key, byte[] value) {
+		store.appendEncoded(key, ByteBuffer.wrap(value));
+	}
+
+	/**
+	 * Puts the remaining bytes of the buffer into this Store with the associated key.
+	 * 
+	 * @param key - key with which the specified value is to be associated
+	 * @param value - buffer holding the bytes in its remaining bytes
+	 */
+	public void append(String key, ByteBuffer value) {
+		store.appendEncoded(key, value.duplicate());
+	}
+
+	/**
+	 * Returns the bytes to which the specified key is mapped, or null if this Store contains no value for the key.
+	 * 
+	 * @param key - key whose associated value is to be returned
+	 * @return bytes to which the specified key is associated, or null if this Store contains no mapping for the key
+	 */
+	public byte[] get(String key) {
+		ByteBuffer value = store.readEncoded(key);
+		if (value == null)
+			return null;
+		// the buffer is read exactly for the value, the value of a mapped data file isn't backed by an array
+		if (value.hasArray() && value.arrayOffset() == 0 && value.position() == 0 && value.remaining() == value.array().length)
+			return value.array();
+		byte[] bytes = new byte[value.remaining()];
+		value.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Transfers the bytes to which the specified key is mapped into the buffer.
+	 * 
+	 * @param key - key whose associated value is to be read
+	 * @param dst - buffer receiving the bytes starting at its position, the position is advanced by the size of the value
+	 * @return size of the value, or -1 if this Store contains no mapping for the key
+	 * @throws java.nio.BufferOverflowException if there is insufficient space in the buffer, the buffer is left unchanged
+	 */
+	public int readInto(String key, ByteBuffer dst) {
+		return store.readInto(key, dst);
+	}
+
+	/**
+	 * Removes the value for the specified key from this Store if present.
+	 * 
+	 * @param key - key whose value is to be removed from the Store
+	 * @return true if the value associated with the key exists, false if there was no value for the key
+	 */
+	public boolean remove(String key) {
+		return store.remove(key);
+	}
+
+	/**
+	 * Generates a unique key provided as UUID string
+	 * 
+	 * @return a randomly generated 16 byte key
+	 */
+	public String generateKey() {
+		return store.generateKey();
+	}
+
+	/**
+	 * Closes file channels resources
+	 */
+	public void close() {
+		store.close();
+	}
+
+}
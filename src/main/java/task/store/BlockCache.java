@@ -0,0 +1,233 @@
+package task.store;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of fixed-size blocks of the completed data files held in the direct memory, out of the Java heap.
+ * A block is identified by the number of its data file and its ordinal number in the file.
+ * The blocks are evicted by the CLOCK algorithm: the hand passes the referenced blocks clearing their marks
+ * and evicts the first block not referenced since the previous pass.
+ * The cached files must not change, the cache is cleared once they are replaced.
+ *
+ * @author Fedor Trofimov
+ *
+ */
+final class BlockCache {
+
+	static final int BLOCK_SIZE = 1 << 12;
+
+	private final ByteBuffer[] frames;
+	private final long[] keys;
+	private final boolean[] referenced;
+	private final boolean[] loading;
+	private final Map<Long, Integer> slots = new HashMap<>();
+	private int used;
+	private int hand;
+	private long hits;
+	private long misses;
+
+	/**
+	 * Constructs the cache
+	 * @param capacity - maximum size of the cached blocks in bytes, at least one block is cached
+	 */
+	BlockCache(long capacity) {
+		int size = (int) Math.min(Integer.MAX_VALUE, Math.max(1, capacity / BLOCK_SIZE));
+		frames = new ByteBuffer[size];
+		keys = new long[size];
+		referenced = new boolean[size];
+		loading = new boolean[size];
+	}
+
+	/**
+	 * Reads bytes of the data file, the missing blocks are read from its channel and cached
+	 * @param fileNumber - ordinal number of the data file
+	 * @param position - position in the data file
+	 * @param dst - buffer receiving the bytes, it is filled up to its limit
+	 * @param dfc - channel of the data file
+	 * @throws IOException
+	 */
+	void read(int fileNumber, long position, ByteBuffer dst, FileChannel dfc) throws IOException {
+		while (dst.hasRemaining()) {
+			long blockNumber = position / BLOCK_SIZE;
+			int offset = (int) (position % BLOCK_SIZE);
+			long key = (long) fileNumber << 32 | blockNumber;
+			int count = copy(key, offset, dst);
+			if (count < 0)
+				count = load(key, blockNumber * BLOCK_SIZE, offset, dst, dfc);
+			position += count;
+		}
+	}
+
+	/**
+	 * Reads the missing block into the frame of the slot reserved for it and copies its bytes.
+	 * The block is read without the lock, the concurrent readers may load it twice.
+	 * @param key - key of the block
+	 * @param blockPosition - position of the block in the data file
+	 * @param offset - offset in the block
+	 * @param dst - buffer receiving the bytes
+	 * @param dfc - channel of the data file
+	 * @return number of the copied bytes
+	 * @throws IOException
+	 */
+	private int load(long key, long blockPosition, int offset, ByteBuffer dst, FileChannel dfc) throws IOException {
+		int slot = reserve();
+		if (slot < 0) {
+			// all the blocks are being loaded, the bytes are read past the cache
+			ByteBuffer part = dst.duplicate();
+			part.limit(part.position() + Math.min(part.remaining(), BLOCK_SIZE - offset));
+			int count = part.remaining();
+			readFully(dfc, part, blockPosition + offset, key);
+			dst.position(part.position());
+			return count;
+		}
+		ByteBuffer frame = frames[slot];
+		boolean loaded = false;
+		try {
+			frame.clear();
+			// the last block of the file may be incomplete
+			while (frame.hasRemaining()) {
+				if (dfc.read(frame, blockPosition + frame.position()) < 0)
+					break;
+			}
+			frame.flip();
+			if (frame.limit() <= offset)
+				throw new EOFException("The data file " + (key >>> 32) + " is truncated");
+			// the frame is copied before it's published, afterwards it may be evicted by another reader
+			ByteBuffer block = frame.duplicate();
+			block.position(offset);
+			int count = Math.min(block.remaining(), dst.remaining());
+			block.limit(offset + count);
+			dst.put(block);
+			loaded = true;
+			return count;
+		} finally {
+			publish(slot, frame, loaded ? key : -1);
+		}
+	}
+
+	/**
+	 * Reads bytes of the data file up to the limit of the buffer
+	 * @param dfc - channel of the data file
+	 * @param dst - buffer receiving the bytes
+	 * @param position - position in the data file
+	 * @param key - key of the block holding the bytes
+	 * @throws IOException
+	 */
+	private static void readFully(FileChannel dfc, ByteBuffer dst, long position, long key) throws IOException {
+		while (dst.hasRemaining()) {
+			int read = dfc.read(dst, position);
+			if (read < 0)
+				throw new EOFException("The data file " + (key >>> 32) + " is truncated");
+			position += read;
+		}
+	}
+
+	/**
+	 * Copies bytes of the cached block
+	 * @param key - key of the block
+	 * @param offset - offset in the block
+	 * @param dst - buffer receiving the bytes
+	 * @return number of the copied bytes, -1 if the block isn't cached
+	 * @throws EOFException if the block ends before the offset
+	 */
+	private synchronized int copy(long key, int offset, ByteBuffer dst) throws EOFException {
+		Integer slot = slots.get(key);
+		if (slot == null) {
+			misses++;
+			return -1;
+		}
+		hits++;
+		referenced[slot] = true;
+		ByteBuffer frame = frames[slot].duplicate();
+		if (frame.limit() <= offset)
+			throw new EOFException("The data file " + (key >>> 32) + " is truncated");
+		frame.position(offset);
+		int count = Math.min(frame.remaining(), dst.remaining());
+		frame.limit(offset + count);
+		dst.put(frame);
+		return count;
+	}
+
+	/**
+	 * Reserves the slot for the block being loaded, evicts another block if the cache is full
+	 * @return number of the slot, -1 if all the slots are being loaded
+	 */
+	private synchronized int reserve() {
+		int slot = -1;
+		if (used < frames.length) {
+			slot = used++;
+			frames[slot] = ByteBuffer.allocateDirect(BLOCK_SIZE);
+		} else {
+			// two passes at most, the first one may only clear the marks
+			for (int i = 0; i < 2 * frames.length && slot < 0; i++) {
+				if (!loading[hand]) {
+					if (referenced[hand])
+						referenced[hand] = false;
+					else
+						slot = hand;
+				}
+				hand = (hand + 1) % frames.length;
+			}
+			if (slot < 0)
+				return -1;
+			if (keys[slot] >= 0)
+				slots.remove(keys[slot]);
+		}
+		keys[slot] = -1;
+		referenced[slot] = false;
+		loading[slot] = true;
+		return slot;
+	}
+
+	/**
+	 * Caches the block loaded into the reserved slot
+	 * @param slot - number of the slot
+	 * @param frame - frame of the slot the block is loaded into
+	 * @param key - key of the block, -1 if the block isn't loaded and the slot is left empty
+	 */
+	private synchronized void publish(int slot, ByteBuffer frame, long key) {
+		if (frames[slot] != frame)
+			return; // the cache is cleared
+		loading[slot] = false;
+		if (key < 0 || slots.containsKey(key))
+			return;
+		keys[slot] = key;
+		slots.put(key, slot);
+	}
+
+	/**
+	 * Evicts all the blocks, their memory is released
+	 */
+	synchronized void clear() {
+		slots.clear();
+		for (int i = 0; i < used; i++) {
+			frames[i] = null;
+			referenced[i] = false;
+			loading[i] = false;
+		}
+		used = 0;
+		hand = 0;
+	}
+
+	/**
+	 *
+	 * @return number of the reads of the cached blocks
+	 */
+	synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 *
+	 * @return number of the reads of the blocks missing in the cache
+	 */
+	synchronized long getMisses() {
+		return misses;
+	}
+
+}
@@ -0,0 +1,228 @@
+package task.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Loader of a new Store from a sequence of entries.
+ * Data and index files are written directly in large sequential chunks instead of appending values one by one,
+ * the loaded files are opened as a regular Store.
+ * 
+ * @author Fedor Trofimov
+ * @param <T> The type of a value in the Store
+ */
+public class BulkLoader<T extends Serializable> {
+
+	private static final int DATA_CHUNK_SIZE = 1 << 20; // 1Mb
+	private static final int INDEX_CHUNK_SIZE = 1 << 18; // 256Kb
+
+	private final String directory;
+	private final Codec<T> storeCodec;
+	private final StoreConfig config;
+	private Codec<T> codec;
+	private ClassDictionary classDictionary;
+	private Set<String> keys = new HashSet<>();
+	private ByteBufferOutputStream valueBuffer = new ByteBufferOutputStream(1 << 12);
+	private ByteBuffer dataChunk = ByteBuffer.allocateDirect(DATA_CHUNK_SIZE);
+	private ByteBuffer indexChunk = ByteBuffer.allocateDirect(INDEX_CHUNK_SIZE);
+	private Compressor compressor = new Compressor();
+	private IndexCodec indexCodec = new IndexCodec();
+	private FileChannel ifc;
+	private FileChannel dfc;
+	private int fileNumber;
+	private long dataEnd;
+	private long indexEnd;
+
+	private final String IFILE_EXT = ".ind";
+	private final String CFILE_EXT = ".cls";
+	private final String DFILE_EXT = ".dat";
+	private final String FILE_PREFIX = "store";
+
+	/**
+	 * Constructs the loader of the Store in the specified FS directory
+	 * @param directory - directory where the index and data files of the Store are placed, the directory must be existed and contain no Store
+	 */
+	public BulkLoader(String directory) {
+		this(directory, new JavaSerializationCodec<T>(), new StoreConfig());
+	}
+
+	/**
+	 * Constructs the loader of the Store in the specified FS directory
+	 * @param directory - directory where the index and data files of the Store are placed, the directory must be existed and contain no Store
+	 * @param codec - codec converting values to bytes and back
+	 * @param config - settings of the Store, the compression, class dictionary and segment size are applied to the loaded values
+	 */
+	public BulkLoader(String directory, Codec<T> codec, StoreConfig config) {
+		if (codec == null)
+			throw new IllegalArgumentException("The codec must be specified");
+		if (config.getCompression() == null)
+			throw new IllegalArgumentException("The compression must be specified");
+		if (config.getSegmentSize() <= 0)
+			throw new IllegalArgumentException("The segment size must be positive");
+		if (config.isClassDictionary() && !(codec instanceof JavaSerializationCodec))
+			throw new IllegalArgumentException("The class dictionary is applicable to the Java serialization codec only");
+		String[] files = new File(directory).list((dir, name) -> name.startsWith(FILE_PREFIX));
+		if (files == null || files.length > 0)
+			throw new IllegalArgumentException("The directory must be existed and contain no Store");
+		this.directory = directory;
+		this.storeCodec = codec;
+		this.codec = codec;
+		this.config = config;
+		try {
+			if (config.isClassDictionary()) {
+				classDictionary = new ClassDictionary(Paths.get(directory, FILE_PREFIX + CFILE_EXT).toString());
+				this.codec = new JavaSerializationCodec<T>(classDictionary);
+			}
+			ifc = new RandomAccessFile(Paths.get(directory, FILE_PREFIX + IFILE_EXT).toFile(), "rw").getChannel();
+			IndexFormat.writeHeader(ifc);
+			indexEnd = IndexFormat.HEADER_SIZE;
+			dfc = openDataFile(0);
+		} catch (IOException | ClassNotFoundException exc) {
+			throw new RuntimeException("Unable to create the Store files", exc);
+		}
+	}
+
+	/**
+	 * Loads the entries into the Store
+	 * @param entries - keys and values to be associated with them
+	 * @return this loader
+	 */
+	public BulkLoader<T> load(Iterator<? extends Map.Entry<String, T>> entries) {
+		try {
+			while (entries.hasNext()) {
+				Map.Entry<String, T> entry = entries.next();
+				// the key is validated before anything of the entry is buffered
+				int keyLength = IndexFormat.keyLength(entry.getKey());
+				if (!keys.add(entry.getKey()))
+					throw new IllegalArgumentException("Object with the key " + entry.getKey() + " has already existed");
+				valueBuffer.reset();
+				codec.encode(entry.getValue(), valueBuffer);
+				ByteBuffer data = valueBuffer.buffer();
+				data.flip();
+				write(entry.getKey(), keyLength, data);
+			}
+		} catch (IOException exc) {
+			throw new RuntimeException(exc);
+		}
+		return this;
+	}
+
+	/**
+	 * Loads the entries into the Store
+	 * @param entries - keys and values to be associated with them
+	 * @return this loader
+	 */
+	public BulkLoader<T> load(Stream<? extends Map.Entry<String, T>> entries) {
+		return load(entries.iterator());
+	}
+
+	/**
+	 * Completes the files of the Store and opens it
+	 * @return the loaded Store
+	 */
+	public Store<T> open() {
+		try {
+			flushData();
+			flushIndex();
+			dfc.close();
+			ifc.close();
+			compressor.end();
+			if (classDictionary != null)
+				classDictionary.close();
+		} catch (IOException exc) {
+			throw new RuntimeException(exc);
+		}
+		keys = null;
+		return new Store<>(directory, storeCodec, config);
+	}
+
+	/**
+	 * Puts the value into the data chunk and its index into the index chunk
+	 * @param key - key of the value
+	 * @param keyLength - length of the encoded key
+	 * @param value - buffer holding the encoded value
+	 * @throws IOException
+	 */
+	private void write(String key, int keyLength, ByteBuffer value) throws IOException {
+		ByteBuffer data = value;
+		Compression dataCompression = Compression.NONE;
+		if (config.getCompression() != Compression.NONE) {
+			// the dictionary is trained by the Store later
+			Compression valueCompression = config.getCompression() == Compression.DICTIONARY
+					? Compression.DEFLATE : config.getCompression();
+			ByteBuffer compressed = compressor.compress(valueCompression, data);
+			if (compressed != null) {
+				data = compressed;
+				dataCompression = valueCompression;
+			}
+		}
+		int dataSize = data.remaining();
+		Index index = new Index(false, fileNumber, dataEnd, dataSize, indexEnd, key, dataCompression);
+
+		if (dataChunk.remaining() < dataSize)
+			flushData();
+		if (dataChunk.remaining() < dataSize) {
+			// the value exceeds the chunk
+			long position = dataEnd;
+			while (data.hasRemaining())
+				position += dfc.write(data, position);
+		} else {
+			dataChunk.put(data);
+		}
+		dataEnd += dataSize;
+
+		if (indexChunk.remaining() < indexCodec.maxRecordSize(keyLength))
+			flushIndex();
+		int start = indexChunk.position();
+		indexCodec.write(index, keyLength, indexChunk);
+		indexEnd += indexChunk.position() - start;
+
+		// start the next data file on reaching the segment size
+		if (dataEnd > config.getSegmentSize()) {
+			flushData();
+			dfc.close();
+			dfc = openDataFile(++fileNumber);
+			dataEnd = 0;
+		}
+	}
+
+	/**
+	 * Writes the data chunk to the end of the current data file
+	 * @throws IOException
+	 */
+	private void flushData() throws IOException {
+		dataChunk.flip();
+		long position = dataEnd - dataChunk.remaining();
+		while (dataChunk.hasRemaining())
+			position += dfc.write(dataChunk, position);
+		dataChunk.clear();
+	}
+
+	/**
+	 * Writes the index chunk to the end of the index file
+	 * @throws IOException
+	 */
+	private void flushIndex() throws IOException {
+		indexChunk.flip();
+		long position = indexEnd - indexChunk.remaining();
+		while (indexChunk.hasRemaining())
+			position += ifc.write(indexChunk, position);
+		indexChunk.clear();
+	}
+
+	private FileChannel openDataFile(int number) throws IOException {
+		String name = FILE_PREFIX + "_" + String.format("%04d", number) + DFILE_EXT;
+		return new RandomAccessFile(Paths.get(directory, name).toFile(), "rw").getChannel();
+	}
+
+}
@@ -0,0 +1,89 @@
+package task.store;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Output stream collecting bytes in a reusable direct buffer which grows on demand
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+class ByteBufferOutputStream extends OutputStream {
+
+	private ByteBuffer buffer;
+
+	/**
+	 * Constructs the stream
+	 * @param initialCapacity - initial capacity of the buffer
+	 */
+	ByteBufferOutputStream(int initialCapacity) {
+		buffer = ByteBuffer.allocateDirect(initialCapacity);
+	}
+
+	/**
+	 * Discards written bytes keeping the buffer for the reuse
+	 */
+	void reset() {
+		buffer.clear();
+	}
+
+	/**
+	 * Returns the buffer holding written bytes before its position, the buffer may be replaced by the following writes
+	 * @return the buffer of the stream
+	 */
+	ByteBuffer buffer() {
+		return buffer;
+	}
+
+	/**
+	 * 
+	 * @return number of written bytes
+	 */
+	int size() {
+		return buffer.position();
+	}
+
+	@Override
+	public void write(int b) {
+		ensureCapacity(1);
+		buffer.put((byte) b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		ensureCapacity(len);
+		buffer.put(b, off, len);
+	}
+
+	/**
+	 * Writes the remaining bytes of the buffer
+	 * @param src - buffer holding bytes to be written, its position is advanced to its limit
+	 */
+	void write(ByteBuffer src) {
+		ensureCapacity(src.remaining());
+		buffer.put(src);
+	}
+
+	/**
+	 * Discards bytes written after the specified number of bytes
+	 * @param size - number of bytes to be kept
+	 */
+	void truncate(int size) {
+		buffer.position(size);
+	}
+
+	/**
+	 * Grows the buffer to fit the specified number of bytes more
+	 * @param len - number of bytes to be written
+	 */
+	void ensureCapacity(int len) {
+		if (buffer.remaining() >= len)
+			return;
+		ByteBuffer newBuffer = ByteBuffer.allocateDirect(Math.max(buffer.capacity() << 1, buffer.position() + len));
+		buffer.flip();
+		newBuffer.put(buffer);
+		buffer = newBuffer;
+	}
+
+}
@@ -0,0 +1,138 @@
+package task.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-store dictionary of class descriptors of Java serialized values.
+ * <p>
+ * Every descriptor is persisted once as a length prefixed Java serialized ObjectStreamClass,
+ * the ordinal number of the descriptor in the file is its identifier referenced by the values.
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+class ClassDictionary {
+
+	private final FileChannel channel;
+	private final List<ObjectStreamClass> descriptors = new ArrayList<>();
+	private final Map<String, Integer> ids = new HashMap<>();
+	private final boolean durable;
+	private long size;
+
+	/**
+	 * Opens the dictionary file and loads descriptors persisted in it
+	 * @param path - path of the dictionary file
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	ClassDictionary(String path) throws IOException, ClassNotFoundException {
+		this(path, false);
+	}
+
+	/**
+	 * Opens the dictionary file and loads descriptors persisted in it
+	 * @param path - path of the dictionary file
+	 * @param durable - true if a new descriptor is forced to the disk before its identifier is returned,
+	 * so a durable value never refers to a lost descriptor
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	ClassDictionary(String path, boolean durable) throws IOException, ClassNotFoundException {
+		this.durable = durable;
+		channel = new RandomAccessFile(path, "rw").getChannel();
+		size = channel.size();
+		ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+		long position = 0;
+		while (position < size) {
+			lengthBuffer.clear();
+			channel.read(lengthBuffer, position);
+			byte[] byteArray = new byte[lengthBuffer.getInt(0)];
+			if (position + 4 + byteArray.length > size)
+				throw new StreamCorruptedException("The class dictionary is truncated at offset " + position);
+			channel.read(ByteBuffer.wrap(byteArray), position + 4);
+			position += 4 + byteArray.length;
+
+			ObjectInputStream ois = new ObjectInputStream(new ByteBufferInputStream(ByteBuffer.wrap(byteArray)));
+			ObjectStreamClass desc = (ObjectStreamClass) ois.readObject();
+			ids.put(signature(desc), descriptors.size());
+			descriptors.add(desc);
+		}
+	}
+
+	/**
+	 * Returns the identifier of the descriptor, the descriptor is persisted if it is absent in the dictionary
+	 * @param desc - class descriptor
+	 * @return identifier of the descriptor
+	 * @throws IOException
+	 */
+	synchronized int idOf(ObjectStreamClass desc) throws IOException {
+		String signature = signature(desc);
+		Integer id = ids.get(signature);
+		if (id != null)
+			return id;
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		baos.write(new byte[4]);
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		oos.writeObject(desc);
+		oos.flush();
+		ByteBuffer byteBuffer = ByteBuffer.wrap(baos.toByteArray());
+		byteBuffer.putInt(0, byteBuffer.remaining() - 4);
+		while (byteBuffer.hasRemaining())
+			size += channel.write(byteBuffer, size);
+		if (durable)
+			channel.force(false);
+
+		id = descriptors.size();
+		ids.put(signature, id);
+		descriptors.add(desc);
+		return id;
+	}
+
+	/**
+	 * 
+	 * @param id - identifier of the descriptor
+	 * @return class descriptor
+	 * @throws StreamCorruptedException if the dictionary has no descriptor with the identifier
+	 */
+	synchronized ObjectStreamClass descriptor(int id) throws StreamCorruptedException {
+		if (id < 0 || id >= descriptors.size())
+			throw new StreamCorruptedException("Unknown class descriptor " + id);
+		return descriptors.get(id);
+	}
+
+	/**
+	 * Closes the dictionary file
+	 * @throws IOException
+	 */
+	void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Builds the signature identifying the version of the class, the serial version UID isn't enough
+	 * since the class may change its fields keeping the explicitly declared UID
+	 * @param desc - class descriptor
+	 * @return signature of the descriptor
+	 */
+	private static String signature(ObjectStreamClass desc) {
+		StringBuilder sb = new StringBuilder(desc.getName()).append('#').append(desc.getSerialVersionUID());
+		for (ObjectStreamField field : desc.getFields())
+			sb.append(' ').append(field.getTypeCode()).append(field.getName());
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,34 @@
+package task.store;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts values of the Store into their binary representation and back.
+ * The Store decodes values in the threads calling its reads concurrently, so decode must be thread-safe.
+ * Values are encoded one at a time unless they are encoded in parallel for asynchronous appends.
+ * 
+ * @author Fedor Trofimov
+ * @param <T> The type of a value in the Store
+ */
+public interface Codec<T> {
+
+	/**
+	 * Writes the binary representation of the value into the stream
+	 * @param value - value to be encoded
+	 * @param out - stream receiving the encoded bytes
+	 * @throws IOException
+	 */
+	public void encode(T value, OutputStream out) throws IOException;
+
+	/**
+	 * Reads the value from the remaining bytes of the buffer, the method may be called by several threads at once
+	 * @param buffer - buffer holding exactly one encoded value, it may be a read-only buffer not backed by an array
+	 * @return decoded value
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public T decode(ByteBuffer buffer) throws IOException, ClassNotFoundException;
+
+}
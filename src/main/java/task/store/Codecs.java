@@ -0,0 +1,106 @@
+package task.store;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codecs of the common types, handy as field codecs of the {@link FieldTableCodec}
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+public final class Codecs {
+
+	/**
+	 * UTF-8 encoded string
+	 */
+	public static final Codec<String> STRING = new Codec<String>() {
+
+		@Override
+		public void encode(String value, OutputStream out) throws IOException {
+			out.write(value.getBytes(StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public String decode(ByteBuffer buffer) {
+			return StandardCharsets.UTF_8.decode(buffer).toString();
+		}
+	};
+
+	/**
+	 * Big-endian 4 bytes integer
+	 */
+	public static final Codec<Integer> INT = new Codec<Integer>() {
+
+		@Override
+		public void encode(Integer value, OutputStream out) throws IOException {
+			writeLong(value, 4, out);
+		}
+
+		@Override
+		public Integer decode(ByteBuffer buffer) {
+			return buffer.getInt();
+		}
+	};
+
+	/**
+	 * Big-endian 8 bytes integer
+	 */
+	public static final Codec<Long> LONG = new Codec<Long>() {
+
+		@Override
+		public void encode(Long value, OutputStream out) throws IOException {
+			writeLong(value, 8, out);
+		}
+
+		@Override
+		public Long decode(ByteBuffer buffer) {
+			return buffer.getLong();
+		}
+	};
+
+	/**
+	 * IEEE 754 double precision number
+	 */
+	public static final Codec<Double> DOUBLE = new Codec<Double>() {
+
+		@Override
+		public void encode(Double value, OutputStream out) throws IOException {
+			writeLong(Double.doubleToRawLongBits(value), 8, out);
+		}
+
+		@Override
+		public Double decode(ByteBuffer buffer) {
+			return buffer.getDouble();
+		}
+	};
+
+	/**
+	 * Bytes stored verbatim
+	 */
+	public static final Codec<byte[]> BYTES = new Codec<byte[]>() {
+
+		@Override
+		public void encode(byte[] value, OutputStream out) throws IOException {
+			out.write(value);
+		}
+
+		@Override
+		public byte[] decode(ByteBuffer buffer) {
+			byte[] value = new byte[buffer.remaining()];
+			buffer.get(value);
+			return value;
+		}
+	};
+
+	private Codecs() {
+	}
+
+	private static void writeLong(long value, int size, OutputStream out) throws IOException {
+		for (int shift = (size - 1) << 3; shift >= 0; shift -= 8)
+			out.write((int) (value >>> shift));
+	}
+
+}
@@ -0,0 +1,59 @@
+package task.store;
+
+/**
+ * Compression algorithm applied to values before they are written into data files
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+public enum Compression {
+
+	/**
+	 * Values are stored as they are encoded by the codec
+	 */
+	NONE(0),
+
+	/**
+	 * Values are compressed by the Deflate algorithm, the best ratio at the cost of CPU
+	 */
+	DEFLATE(1),
+
+	/**
+	 * Values are compressed by the LZ77 algorithm of the LZ4 block format, the fastest compression with a moderate ratio
+	 */
+	LZ(2),
+
+	/**
+	 * Values are compressed by the Deflate algorithm with the preset dictionary trained on the values of the Store,
+	 * the best choice for small values which barely compress individually. The dictionary is retrained on relocation.
+	 */
+	DICTIONARY(3);
+
+	private final int id;
+
+	private Compression(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * 
+	 * @return identifier of the algorithm persisted in the index
+	 */
+	int getId() {
+		return id;
+	}
+
+	/**
+	 * Finds the algorithm by its persisted identifier
+	 * @param id - identifier of the algorithm
+	 * @return compression algorithm
+	 */
+	static Compression forId(int id) {
+		for (Compression compression : values()) {
+			if (compression.id == id)
+				return compression;
+		}
+		throw new IllegalArgumentException("Unknown compression " + id);
+	}
+
+}
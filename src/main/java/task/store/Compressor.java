@@ -0,0 +1,174 @@
+package task.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and decompresses values stored in data files.
+ * <p>
+ * A compressed value is stored as its uncompressed length followed by the compressed bytes.
+ * An instance of the compressor keeps the state reused by subsequent compressions, so it is confined to a single writer.
+ * Decompression has no state and may be performed concurrently.
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+final class Compressor {
+
+	private static final int LENGTH_SIZE = 4;
+
+	private Deflater deflater;
+	private byte[] dictionary;
+	private int[] lzTable;
+	private byte[] input = new byte[0];
+	private byte[] output = new byte[0];
+	private ByteBuffer outputBuffer = ByteBuffer.wrap(output);
+
+	/**
+	 * Compresses the encoded value
+	 * @param compression - compression algorithm
+	 * @param src - buffer holding the encoded value in its remaining bytes, the position of the buffer is left unchanged
+	 * @return buffer ready to be written, valid until the next compression, or null if the compression doesn't reduce the size of the value
+	 */
+	ByteBuffer compress(Compression compression, ByteBuffer src) {
+		int len = src.remaining();
+		if (input.length < len)
+			input = new byte[len];
+		int position = src.position();
+		src.get(input, 0, len);
+		src.position(position);
+
+		int compressedSize;
+		switch (compression) {
+		case DEFLATE:
+		case DICTIONARY:
+			ensureOutputCapacity(LENGTH_SIZE + len);
+			if (deflater == null)
+				deflater = new Deflater();
+			deflater.reset();
+			if (compression == Compression.DICTIONARY) {
+				if (dictionary == null)
+					throw new IllegalStateException("The compression dictionary isn't set");
+				deflater.setDictionary(dictionary);
+			}
+			deflater.setInput(input, 0, len);
+			deflater.finish();
+			compressedSize = deflater.deflate(output, LENGTH_SIZE, len);
+			if (!deflater.finished())
+				return null;
+			break;
+		case LZ:
+			ensureOutputCapacity(LENGTH_SIZE + Lz.maxCompressedLength(len));
+			if (lzTable == null)
+				lzTable = Lz.newTable();
+			compressedSize = Lz.compress(input, 0, len, output, LENGTH_SIZE, lzTable);
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported compression " + compression);
+		}
+		if (compressedSize + LENGTH_SIZE >= len)
+			return null;
+		outputBuffer.clear();
+		outputBuffer.putInt(0, len).limit(LENGTH_SIZE + compressedSize);
+		return outputBuffer;
+	}
+
+	/**
+	 * Sets the preset dictionary of the DICTIONARY compression
+	 * @param dictionary - trained dictionary
+	 */
+	void setDictionary(byte[] dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * 
+	 * @return the preset dictionary of the DICTIONARY compression
+	 */
+	byte[] getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Releases the native resources of the compressor
+	 */
+	void end() {
+		if (deflater != null)
+			deflater.end();
+	}
+
+	private void ensureOutputCapacity(int len) {
+		if (output.length < len) {
+			output = new byte[len];
+			outputBuffer = ByteBuffer.wrap(output);
+		}
+	}
+
+	/**
+	 * Decompresses the value read from the data file
+	 * @param compression - compression algorithm the value has been compressed with
+	 * @param src - buffer holding the stored value
+	 * @return buffer holding the encoded value
+	 * @throws IOException
+	 */
+	static ByteBuffer decompress(Compression compression, ByteBuffer src) throws IOException {
+		return decompress(compression, src, null);
+	}
+
+	/**
+	 * Decompresses the value read from the data file
+	 * @param compression - compression algorithm the value has been compressed with
+	 * @param src - buffer holding the stored value
+	 * @param dictionary - preset dictionary of the DICTIONARY compression
+	 * @return buffer holding the encoded value
+	 * @throws IOException
+	 */
+	static ByteBuffer decompress(Compression compression, ByteBuffer src, byte[] dictionary) throws IOException {
+		if (compression == Compression.NONE)
+			return src;
+		int len = src.getInt();
+		byte[] dst = new byte[len];
+		switch (compression) {
+		case DEFLATE:
+		case DICTIONARY:
+			Inflater inflater = new Inflater();
+			try {
+				if (src.hasArray()) {
+					inflater.setInput(src.array(), src.arrayOffset() + src.position(), src.remaining());
+				} else {
+					byte[] input = new byte[src.remaining()];
+					src.get(input);
+					inflater.setInput(input);
+				}
+				int inflated = inflater.inflate(dst);
+				if (inflater.needsDictionary()) {
+					if (dictionary == null)
+						throw new IOException("The compression dictionary is missing");
+					try {
+						inflater.setDictionary(dictionary);
+					} catch (IllegalArgumentException exc) {
+						throw new IOException("The value is compressed with another dictionary", exc);
+					}
+					inflated = inflater.inflate(dst);
+				}
+				if (inflated != len || !inflater.finished())
+					throw new IOException("Corrupted compressed value");
+			} catch (DataFormatException exc) {
+				throw new IOException("Corrupted compressed value", exc);
+			} finally {
+				inflater.end();
+			}
+			break;
+		case LZ:
+			Lz.decompress(src, dst, 0, len);
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported compression " + compression);
+		}
+		return ByteBuffer.wrap(dst);
+	}
+
+}
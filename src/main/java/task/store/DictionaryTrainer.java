@@ -0,0 +1,125 @@
+package task.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trains the preset dictionary of the Deflate compression from sample values.
+ * <p>
+ * The samples are split into epochs, the segment of every epoch having the most frequent k-mers is added to the dictionary.
+ * The frequency of a k-mer is the number of samples containing it, k-mers of selected segments aren't counted again,
+ * so the dictionary covers the content common for many values without repetitions.
+ * The best segments are placed at the end of the dictionary where references to them are the shortest.
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+final class DictionaryTrainer {
+
+	private static final int K = 8;
+	private static final int SEGMENT_SIZE = 48;
+
+	private DictionaryTrainer() {
+	}
+
+	/**
+	 * Trains the dictionary
+	 * @param samples - sample values
+	 * @param capacity - the largest size of the dictionary
+	 * @return trained dictionary
+	 */
+	static byte[] train(List<byte[]> samples, int capacity) {
+		Map<Long, Integer> frequencies = new HashMap<>();
+		int total = 0;
+		for (byte[] sample : samples) {
+			Set<Long> kmers = new HashSet<>();
+			for (int i = 0; i + K <= sample.length; i++)
+				kmers.add(kmer(sample, i));
+			for (Long kmer : kmers)
+				frequencies.merge(kmer, 1, Integer::sum);
+			total += sample.length;
+		}
+
+		List<Segment> segments = new ArrayList<>();
+		int epochs = Math.max(1, capacity / SEGMENT_SIZE);
+		int epochSize = Math.max(1, total / epochs);
+		int size = 0;
+		int sampleNumber = 0;
+		while (sampleNumber < samples.size() && size < capacity) {
+			// the epoch consists of the whole samples of epochSize bytes in total
+			int bestScore = 0;
+			byte[] bestSample = null;
+			int bestStart = 0;
+			int epochBytes = 0;
+			while (sampleNumber < samples.size() && epochBytes < epochSize) {
+				byte[] sample = samples.get(sampleNumber++);
+				epochBytes += sample.length;
+				int window = Math.min(SEGMENT_SIZE, sample.length) - K + 1;
+				if (window <= 0)
+					continue;
+				int score = 0;
+				for (int i = 0; i + K <= sample.length; i++) {
+					score += frequency(frequencies, sample, i);
+					if (i >= window)
+						score -= frequency(frequencies, sample, i - window);
+					if (i >= window - 1 && score > bestScore) {
+						bestScore = score;
+						bestSample = sample;
+						bestStart = i - window + 1;
+					}
+				}
+			}
+			// a k-mer met in a single sample is not worth the place in the dictionary
+			if (bestSample == null || bestScore <= Math.min(SEGMENT_SIZE, bestSample.length) - K + 1)
+				continue;
+			int length = Math.min(Math.min(SEGMENT_SIZE, bestSample.length), capacity - size);
+			byte[] segment = new byte[length];
+			System.arraycopy(bestSample, bestStart, segment, 0, length);
+			for (int i = 0; i + K <= length; i++)
+				frequencies.remove(kmer(segment, i));
+			segments.add(new Segment(segment, bestScore));
+			size += length;
+		}
+
+		segments.sort((s1, s2) -> Integer.compare(s1.score, s2.score));
+		byte[] dictionary = new byte[size];
+		int position = 0;
+		for (Segment segment : segments) {
+			System.arraycopy(segment.bytes, 0, dictionary, position, segment.bytes.length);
+			position += segment.bytes.length;
+		}
+		return dictionary;
+	}
+
+	private static int frequency(Map<Long, Integer> frequencies, byte[] sample, int position) {
+		Integer frequency = frequencies.get(kmer(sample, position));
+		return frequency == null ? 0 : frequency;
+	}
+
+	private static long kmer(byte[] bytes, int position) {
+		long kmer = 0;
+		for (int i = position; i < position + K; i++)
+			kmer = kmer << 8 | (bytes[i] & 0xFF);
+		return kmer;
+	}
+
+	/**
+	 * Segment of a sample selected to the dictionary
+	 */
+	private static class Segment {
+
+		private final byte[] bytes;
+		private final int score;
+
+		Segment(byte[] bytes, int score) {
+			this.bytes = bytes;
+			this.score = score;
+		}
+
+	}
+
+}
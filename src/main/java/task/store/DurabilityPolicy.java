@@ -0,0 +1,85 @@
+package task.store;
+
+/**
+ * Policy of flushing written index and data files to the storage device.
+ * The Store forces the files once for all the writes collected since the previous flush,
+ * the timed and volume policies flush them in the background.
+ * Unless the policy is none, the class dictionary and the compression dictionary are forced as soon as they change,
+ * before the values referring to them are written.
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+public final class DurabilityPolicy {
+
+	enum Mode {
+		NONE, EVERY_APPEND, EVERY_MILLIS, EVERY_BYTES
+	}
+
+	private static final DurabilityPolicy NONE = new DurabilityPolicy(Mode.NONE, 0);
+	private static final DurabilityPolicy EVERY_APPEND = new DurabilityPolicy(Mode.EVERY_APPEND, 0);
+
+	private final Mode mode;
+	private final long threshold;
+
+	private DurabilityPolicy(Mode mode, long threshold) {
+		this.mode = mode;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Files are never forced, flushing of written data is left to the operating system
+	 * @return the policy
+	 */
+	public static DurabilityPolicy none() {
+		return NONE;
+	}
+
+	/**
+	 * Files are forced before every append or removal returns
+	 * @return the policy
+	 */
+	public static DurabilityPolicy everyAppend() {
+		return EVERY_APPEND;
+	}
+
+	/**
+	 * Files are forced in the background periodically if there are written data
+	 * @param millis - period of flushing in milliseconds
+	 * @return the policy
+	 */
+	public static DurabilityPolicy everyMillis(long millis) {
+		if (millis <= 0)
+			throw new IllegalArgumentException("The period must be positive");
+		return new DurabilityPolicy(Mode.EVERY_MILLIS, millis);
+	}
+
+	/**
+	 * Files are forced in the background as soon as the specified amount of data is written since the previous flush
+	 * @param bytes - amount of written data in bytes
+	 * @return the policy
+	 */
+	public static DurabilityPolicy everyBytes(long bytes) {
+		if (bytes <= 0)
+			throw new IllegalArgumentException("The amount of data must be positive");
+		return new DurabilityPolicy(Mode.EVERY_BYTES, bytes);
+	}
+
+	Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * 
+	 * @return period in milliseconds or amount of data in bytes depending on the mode
+	 */
+	long getThreshold() {
+		return threshold;
+	}
+
+	@Override
+	public String toString() {
+		return "DurabilityPolicy [mode=" + mode + ", threshold=" + threshold + "]";
+	}
+
+}
@@ -0,0 +1,45 @@
+package task.store;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Names of the fields to be read from a value stored by the {@link FieldTableCodec}
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+public final class FieldProjection {
+
+	private final List<String> fields;
+
+	private FieldProjection(List<String> fields) {
+		this.fields = fields;
+	}
+
+	/**
+	 * Constructs the projection
+	 * @param fields - names of the fields to be read
+	 * @return projection of the fields
+	 */
+	public static FieldProjection of(String... fields) {
+		if (fields.length == 0)
+			throw new IllegalArgumentException("The projection must have fields");
+		return new FieldProjection(Collections.unmodifiableList(Arrays.asList(fields.clone())));
+	}
+
+	/**
+	 * 
+	 * @return names of the projected fields
+	 */
+	public List<String> getFields() {
+		return fields;
+	}
+
+	@Override
+	public String toString() {
+		return "FieldProjection " + fields;
+	}
+
+}
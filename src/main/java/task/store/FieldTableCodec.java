@@ -0,0 +1,195 @@
+package task.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Codec storing fields of a value separately behind the table of their offsets, so the Store is able to read
+ * the requested fields only, see {@link Store#get(String, FieldProjection)}.
+ * <p>
+ * The value is stored as the number of fields (2 bytes), the table of field offsets (4 bytes per field and the end offset)
+ * and the fields encoded by their own codecs. The highest bit of the offset marks a null field.
+ * Fields are identified by their order, so new fields may be added at the end of the table only.
+ * 
+ * @author Fedor Trofimov
+ * @param <T> The type of a value in the Store
+ */
+public class FieldTableCodec<T> implements Codec<T> {
+
+	private static final int NULL_FIELD = 0x80000000;
+
+	private final List<Field<T, ?>> fields;
+	private final Map<String, Integer> fieldNumbers;
+	private final Function<Object[], T> factory;
+
+	private FieldTableCodec(List<Field<T, ?>> fields, Function<Object[], T> factory) {
+		this.fields = fields;
+		this.factory = factory;
+		this.fieldNumbers = new HashMap<>();
+		for (int i = 0; i < fields.size(); i++)
+			fieldNumbers.put(fields.get(i).name, i);
+	}
+
+	@Override
+	public void encode(T value, OutputStream out) throws IOException {
+		int headerSize = headerSize(fields.size());
+		int[] offsets = new int[fields.size() + 1];
+		ByteArrayOutputStream fieldsOut = new ByteArrayOutputStream(256);
+		for (int i = 0; i < fields.size(); i++) {
+			offsets[i] = headerSize + fieldsOut.size();
+			if (!fields.get(i).encode(value, fieldsOut))
+				offsets[i] |= NULL_FIELD;
+		}
+		offsets[fields.size()] = headerSize + fieldsOut.size();
+
+		ByteBuffer header = ByteBuffer.allocate(headerSize);
+		header.putShort((short) fields.size());
+		for (int offset : offsets)
+			header.putInt(offset);
+		out.write(header.array());
+		fieldsOut.writeTo(out);
+	}
+
+	@Override
+	public T decode(ByteBuffer buffer) throws IOException,
+			ClassNotFoundException {
+		RecordSource source = RecordSource.of(buffer);
+		int[] offsets = readOffsets(source);
+		Object[] values = new Object[fields.size()];
+		for (int i = 0; i < values.length && i < offsets.length - 1; i++)
+			values[i] = decodeField(source, offsets, i);
+		return factory.apply(values);
+	}
+
+	/**
+	 * Decodes the projected fields of the value
+	 * @param source - source of the stored value
+	 * @param projection - fields to be decoded
+	 * @return values of the projected fields by their names in the order of the projection
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	Map<String, Object> decode(RecordSource source, FieldProjection projection) throws IOException,
+			ClassNotFoundException {
+		int[] offsets = readOffsets(source);
+		Map<String, Object> values = new LinkedHashMap<>();
+		for (String name : projection.getFields()) {
+			Integer number = fieldNumbers.get(name);
+			if (number == null)
+				throw new IllegalArgumentException("Unknown field '" + name + "'");
+			values.put(name, number < offsets.length - 1 ? decodeField(source, offsets, number) : null);
+		}
+		return values;
+	}
+
+	/**
+	 * Reads the table of field offsets
+	 * @param source - source of the stored value
+	 * @return offsets of the stored fields followed by the end offset
+	 * @throws IOException
+	 */
+	private int[] readOffsets(RecordSource source) throws IOException {
+		int count = source.read(0, 2).getShort() & 0xFFFF;
+		ByteBuffer table = source.read(2, (count + 1) * 4);
+		int[] offsets = new int[count + 1];
+		for (int i = 0; i <= count; i++)
+			offsets[i] = table.getInt();
+		return offsets;
+	}
+
+	private Object decodeField(RecordSource source, int[] offsets, int number) throws IOException,
+			ClassNotFoundException {
+		if ((offsets[number] & NULL_FIELD) != 0)
+			return null;
+		int start = offsets[number];
+		int end = offsets[number + 1] & ~NULL_FIELD;
+		if (end < start)
+			throw new StreamCorruptedException("Corrupted offset of the field " + fields.get(number).name);
+		return fields.get(number).codec.decode(source.read(start, end - start));
+	}
+
+	private static int headerSize(int count) {
+		return 2 + (count + 1) * 4;
+	}
+
+	/**
+	 * Field of the value
+	 * @param <T> The type of a value
+	 * @param <F> The type of a field
+	 */
+	private static class Field<T, F> {
+
+		private final String name;
+		private final Codec<F> codec;
+		private final Function<T, F> getter;
+
+		Field(String name, Codec<F> codec, Function<T, F> getter) {
+			this.name = name;
+			this.codec = codec;
+			this.getter = getter;
+		}
+
+		/**
+		 * Encodes the field of the value
+		 * @return false if the field is null
+		 */
+		boolean encode(T value, OutputStream out) throws IOException {
+			F field = getter.apply(value);
+			if (field == null)
+				return false;
+			codec.encode(field, out);
+			return true;
+		}
+
+	}
+
+	/**
+	 * Builder of the codec
+	 * @param <T> The type of a value in the Store
+	 */
+	public static class Builder<T> {
+
+		private final List<Field<T, ?>> fields = new ArrayList<>();
+
+		/**
+		 * Adds the field to the value layout
+		 * @param name - name of the field
+		 * @param codec - codec of the field
+		 * @param getter - function extracting the field from the value
+		 * @return this builder
+		 */
+		public <F> Builder<T> field(String name, Codec<F> codec, Function<T, F> getter) {
+			for (Field<T, ?> field : fields) {
+				if (field.name.equals(name))
+					throw new IllegalArgumentException("Duplicate field '" + name + "'");
+			}
+			if (fields.size() == 0xFFFF)
+				throw new IllegalArgumentException("Too many fields");
+			fields.add(new Field<>(name, codec, getter));
+			return this;
+		}
+
+		/**
+		 * Builds the codec
+		 * @param factory - function constructing the value from its fields given in the order of their addition
+		 * @return constructed codec
+		 */
+		public FieldTableCodec<T> build(Function<Object[], T> factory) {
+			if (fields.isEmpty())
+				throw new IllegalStateException("The value must have fields");
+			return new FieldTableCodec<>(Collections.unmodifiableList(new ArrayList<>(fields)), factory);
+		}
+
+	}
+
+}
@@ -0,0 +1,168 @@
+package task.store;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Forces written file channels according to the durability policy.
+ * Channels written since the previous flush are collected and forced at once,
+ * so one flush covers any number of writes. The data channels are forced before the index channels,
+ * an index record never becomes durable ahead of the value it refers to.
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+class GroupSync {
+
+	private final DurabilityPolicy policy;
+	private final Set<FileChannel> dirtyChannels = new LinkedHashSet<>();
+	private final Set<FileChannel> dirtyIndexChannels = new LinkedHashSet<>();
+	private long unsyncedBytes;
+	private IOException failure;
+	private boolean closed;
+	private Thread flusher;
+
+	/**
+	 * Constructs the group sync and starts the background flusher if the policy requires it
+	 * @param policy - durability policy
+	 */
+	GroupSync(DurabilityPolicy policy) {
+		this.policy = policy;
+		DurabilityPolicy.Mode mode = policy.getMode();
+		if (mode == DurabilityPolicy.Mode.EVERY_MILLIS || mode == DurabilityPolicy.Mode.EVERY_BYTES) {
+			flusher = new Thread(this::flush, "store-sync");
+			flusher.setDaemon(true);
+			flusher.start();
+		}
+	}
+
+	/**
+	 * Registers the write into the data channel, it must be called once the bytes are written
+	 * @param channel - written file channel
+	 * @param bytes - number of written bytes
+	 */
+	synchronized void written(FileChannel channel, long bytes) {
+		if (policy.getMode() == DurabilityPolicy.Mode.NONE)
+			return;
+		dirtyChannels.add(channel);
+		unsyncedBytes += bytes;
+	}
+
+	/**
+	 * Registers the write into the index channel, it must be called once the bytes are written
+	 * @param channel - written file channel
+	 * @param bytes - number of written bytes
+	 */
+	synchronized void indexWritten(FileChannel channel, long bytes) {
+		if (policy.getMode() == DurabilityPolicy.Mode.NONE)
+			return;
+		dirtyIndexChannels.add(channel);
+		unsyncedBytes += bytes;
+	}
+
+	/**
+	 * Completes the operation of the Store, the written channels are forced or the background flusher is woken up depending on the policy
+	 * @throws IOException if the channels can't be forced or the background flush has failed
+	 */
+	void commit() throws IOException {
+		switch (policy.getMode()) {
+		case EVERY_APPEND:
+			sync();
+			break;
+		case EVERY_BYTES:
+			synchronized (this) {
+				if (unsyncedBytes >= policy.getThreshold())
+					notifyAll();
+			}
+			break;
+		default:
+			break;
+		}
+		synchronized (this) {
+			if (failure != null) {
+				IOException exc = failure;
+				failure = null;
+				throw exc;
+			}
+		}
+	}
+
+	/**
+	 * Forces all the channels written since the previous flush, the data channels first, closed channels are skipped
+	 * @throws IOException
+	 */
+	void sync() throws IOException {
+		List<FileChannel> channels;
+		synchronized (this) {
+			if (dirtyChannels.isEmpty() && dirtyIndexChannels.isEmpty())
+				return;
+			channels = new ArrayList<>(dirtyChannels);
+			channels.addAll(dirtyIndexChannels);
+			dirtyChannels.clear();
+			dirtyIndexChannels.clear();
+			unsyncedBytes = 0;
+		}
+		for (FileChannel channel : channels) {
+			try {
+				channel.force(false);
+			} catch (ClosedChannelException exc) {
+				// the file has been replaced by the relocation
+			}
+		}
+	}
+
+	/**
+	 * Stops the background flusher and forces the written channels
+	 * @throws IOException
+	 */
+	void close() throws IOException {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		if (flusher != null) {
+			try {
+				flusher.join();
+			} catch (InterruptedException exc) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (policy.getMode() != DurabilityPolicy.Mode.NONE)
+			sync();
+	}
+
+	/**
+	 * Loop of the background flusher
+	 */
+	private void flush() {
+		boolean timed = policy.getMode() == DurabilityPolicy.Mode.EVERY_MILLIS;
+		while (true) {
+			synchronized (this) {
+				try {
+					if (timed)
+						wait(policy.getThreshold());
+					else
+						while (!closed && unsyncedBytes < policy.getThreshold())
+							wait();
+				} catch (InterruptedException exc) {
+					return;
+				}
+				if (closed)
+					return;
+			}
+			try {
+				sync();
+			} catch (IOException exc) {
+				synchronized (this) {
+					failure = exc;
+				}
+			}
+		}
+	}
+
+}
@@ -10,21 +10,30 @@ import java.io.Serializable;
  */
 public class Index implements Serializable {
 
+	private static final long serialVersionUID = 4602734336272786993L;
+
 	private boolean isDeleted;
 	private int fileNumber;
 	private long dataOffset;
 	private int dataSize;
 	private transient long indexOffset;
+	private transient Compression compression;
 	private String key;
 
 	public Index(boolean isDeleted, int fileNumber, long dataOffset,
 			int dataSize, long indexOffset, String key) {
+		this(isDeleted, fileNumber, dataOffset, dataSize, indexOffset, key, Compression.NONE);
+	}
+
+	public Index(boolean isDeleted, int fileNumber, long dataOffset,
+			int dataSize, long indexOffset, String key, Compression compression) {
 		this.isDeleted = isDeleted;
 		this.fileNumber = fileNumber;
 		this.dataOffset = dataOffset;
 		this.dataSize = dataSize;
 		this.indexOffset = indexOffset;
 		this.key = key;
+		this.compression = compression;
 	}
 
 	/**
@@ -91,11 +100,21 @@ public class Index implements Serializable {
 		return fileNumber;
 	}
 
+	/**
+	 * 
+	 * @return compression algorithm of the object in the data file
+	 */
+	public Compression getCompression() {
+		// indexes of the legacy format have no compression
+		return compression == null ? Compression.NONE : compression;
+	}
+
 	@Override
 	public String toString() {
 		return "Index [isDeleted=" + isDeleted + ", fileNumber=" + fileNumber
 				+ ", dataOffset=" + dataOffset + ", dataSize=" + dataSize
-				+ ", indexOffset=" + indexOffset + ", key=" + key + "]";
+				+ ", indexOffset=" + indexOffset + ", key=" + key
+				+ ", compression=" + getCompression() + "]";
 	}
 
 }
@@ -0,0 +1,248 @@
+package task.store;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Stateful codec of index records of the version 2, every record is encoded relatively to the preceding one.
+ * <p>
+ * The record consists of the flags, the key, the file number, the data offset and the data size.
+ * The key is stored as 16 bytes if it is a canonical UUID, otherwise as the length of the prefix shared with the preceding key,
+ * the length of the rest and the rest of UTF-8 key bytes. The file number is stored as the difference with the preceding one,
+ * the data offset as the difference with the end of the preceding object in the same file, the data size as is.
+ * Numbers are stored as varints, the signed differences are zigzag encoded.
+ * <p>
+ * Every RESTART_INTERVAL records the state is reset, so the records are grouped into blocks decodable independently.
+ * The same instance is used for reading the file and for appending records to it afterwards.
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+class IndexCodec {
+
+	static final int RESTART_INTERVAL = 16;
+
+	// flags, 2 varints of the key lengths, varints of the file number, the data offset and the data size
+	private static final int MAX_OVERHEAD = 1 + 3 + 3 + 5 + 10 + 5;
+
+	private final int version;
+	private byte[] keyBytes = new byte[64];
+	private byte[] prevKey = new byte[64];
+	private int prevKeyLength;
+	private int prevFileNumber;
+	private long prevDataEnd;
+	private long count;
+	private byte[] markedKey = new byte[64];
+	private int markedKeyLength;
+	private int markedFileNumber;
+	private long markedDataEnd;
+	private long markedCount;
+
+	/**
+	 * Constructs the codec of the current version for the beginning of the index file
+	 */
+	IndexCodec() {
+		this(IndexFormat.VERSION);
+	}
+
+	/**
+	 * Constructs the codec for the beginning of the index file
+	 * @param version - version of the index file
+	 */
+	IndexCodec(int version) {
+		this.version = version;
+	}
+
+	/**
+	 * 
+	 * @param keyLength - length of the UTF-8 encoded key
+	 * @return the largest possible size of the record
+	 */
+	int maxRecordSize(int keyLength) {
+		return version == IndexFormat.VERSION_1 ? IndexFormat.FIXED_RECORD_SIZE + keyLength : MAX_OVERHEAD + keyLength;
+	}
+
+	/**
+	 * Puts the index record into the buffer
+	 * @param index - index to be written
+	 * @param keyLength - length of the UTF-8 encoded key of the index
+	 * @param buffer - target buffer having at least maxRecordSize(keyLength) bytes remaining
+	 */
+	void write(Index index, int keyLength, ByteBuffer buffer) {
+		if (version != IndexFormat.VERSION_2)
+			throw new IllegalStateException("Index records of the version " + version + " are read-only");
+		if (count++ % RESTART_INTERVAL == 0)
+			restart();
+		ensureKeyCapacity(keyLength);
+		String key = index.getKey();
+		IndexFormat.encodeKey(key, keyBytes);
+
+		byte flags = IndexFormat.flags(index);
+		buffer.put(flags);
+		if ((flags & IndexFormat.UUID_KEY) != 0) {
+			buffer.putLong(parseHex(key, 0, 8) << 32 | parseHex(key, 9, 13) << 16 | parseHex(key, 14, 18));
+			buffer.putLong(parseHex(key, 19, 23) << 48 | parseHex(key, 24, 36));
+		} else {
+			int shared = 0;
+			int limit = Math.min(keyLength, prevKeyLength);
+			while (shared < limit && keyBytes[shared] == prevKey[shared])
+				shared++;
+			putVarLong(buffer, shared);
+			putVarLong(buffer, keyLength - shared);
+			buffer.put(keyBytes, shared, keyLength - shared);
+		}
+		int fileNumber = index.getFileNumber();
+		long expectedOffset = fileNumber == prevFileNumber ? prevDataEnd : 0;
+		putVarLong(buffer, zigzag(fileNumber - prevFileNumber));
+		putVarLong(buffer, zigzag(index.getDataOffset() - expectedOffset));
+		putVarLong(buffer, index.getDataSize());
+
+		byte[] swap = prevKey;
+		prevKey = keyBytes;
+		keyBytes = swap;
+		prevKeyLength = keyLength;
+		prevFileNumber = fileNumber;
+		prevDataEnd = index.getDataOffset() + index.getDataSize();
+	}
+
+	/**
+	 * Reads the index record from the buffer
+	 * @param buffer - source buffer
+	 * @param indexOffset - offset of the record in the index file
+	 * @return read index or null if the buffer doesn't contain the whole record, the buffer position is left unchanged in this case
+	 * @throws IOException if the record is corrupted
+	 */
+	Index read(ByteBuffer buffer, long indexOffset) throws IOException {
+		if (version == IndexFormat.VERSION_1)
+			return IndexFormat.readFixed(buffer, indexOffset);
+		int start = buffer.position();
+		try {
+			boolean restart = count % RESTART_INTERVAL == 0;
+			byte[] prevKey = restart ? this.keyBytes : this.prevKey;
+			int prevKeyLength = restart ? 0 : this.prevKeyLength;
+			int prevFileNumber = restart ? 0 : this.prevFileNumber;
+			long prevDataEnd = restart ? 0 : this.prevDataEnd;
+
+			byte flags = buffer.get();
+			String key;
+			int keyLength;
+			if ((flags & IndexFormat.UUID_KEY) != 0) {
+				key = new UUID(buffer.getLong(), buffer.getLong()).toString();
+				keyLength = key.length();
+				ensureKeyCapacity(keyLength);
+				for (int i = 0; i < keyLength; i++)
+					keyBytes[i] = (byte) key.charAt(i);
+			} else {
+				int shared = (int) getVarLong(buffer);
+				int suffixLength = (int) getVarLong(buffer);
+				keyLength = shared + suffixLength;
+				if (shared < 0 || suffixLength < 0 || shared > prevKeyLength || keyLength > IndexFormat.MAX_KEY_LENGTH)
+					throw new StreamCorruptedException("Corrupted key of the index at offset " + indexOffset);
+				if (buffer.remaining() < suffixLength)
+					throw new BufferUnderflowException();
+				ensureKeyCapacity(keyLength);
+				System.arraycopy(prevKey, 0, keyBytes, 0, shared);
+				buffer.get(keyBytes, shared, suffixLength);
+				key = new String(keyBytes, 0, keyLength, StandardCharsets.UTF_8);
+			}
+			int fileNumber = prevFileNumber + (int) unzigzag(getVarLong(buffer));
+			long expectedOffset = fileNumber == prevFileNumber ? prevDataEnd : 0;
+			long dataOffset = expectedOffset + unzigzag(getVarLong(buffer));
+			int dataSize = (int) getVarLong(buffer);
+
+			count++;
+			byte[] swap = this.prevKey;
+			this.prevKey = keyBytes;
+			this.keyBytes = swap;
+			this.prevKeyLength = keyLength;
+			this.prevFileNumber = fileNumber;
+			this.prevDataEnd = dataOffset + dataSize;
+			return new Index((flags & IndexFormat.DELETED) != 0, fileNumber, dataOffset, dataSize, indexOffset, key,
+					Compression.forId(flags >>> IndexFormat.COMPRESSION_SHIFT & IndexFormat.COMPRESSION_MASK));
+		} catch (BufferUnderflowException exc) {
+			buffer.position(start);
+			return null;
+		}
+	}
+
+	/**
+	 * Saves the state of the codec, the records written afterwards are discarded by reset()
+	 * if they don't reach the index file
+	 */
+	void mark() {
+		if (markedKey.length < prevKeyLength)
+			markedKey = new byte[prevKey.length];
+		System.arraycopy(prevKey, 0, markedKey, 0, prevKeyLength);
+		markedKeyLength = prevKeyLength;
+		markedFileNumber = prevFileNumber;
+		markedDataEnd = prevDataEnd;
+		markedCount = count;
+	}
+
+	/**
+	 * Restores the state saved by mark(), the following record is encoded relatively to the last one written before it
+	 */
+	void reset() {
+		ensurePrevKeyCapacity(markedKeyLength);
+		System.arraycopy(markedKey, 0, prevKey, 0, markedKeyLength);
+		prevKeyLength = markedKeyLength;
+		prevFileNumber = markedFileNumber;
+		prevDataEnd = markedDataEnd;
+		count = markedCount;
+	}
+
+	private void restart() {
+		prevKeyLength = 0;
+		prevFileNumber = 0;
+		prevDataEnd = 0;
+	}
+
+	private void ensureKeyCapacity(int keyLength) {
+		if (keyBytes.length < keyLength)
+			keyBytes = new byte[Math.max(keyLength, keyBytes.length << 1)];
+	}
+
+	private void ensurePrevKeyCapacity(int keyLength) {
+		if (prevKey.length < keyLength)
+			prevKey = new byte[Math.max(keyLength, prevKey.length << 1)];
+	}
+
+	private static long parseHex(String s, int from, int to) {
+		long value = 0;
+		for (int i = from; i < to; i++)
+			value = value << 4 | Character.digit(s.charAt(i), 16);
+		return value;
+	}
+
+	static void putVarLong(ByteBuffer buffer, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	static long getVarLong(ByteBuffer buffer) throws StreamCorruptedException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new StreamCorruptedException("Malformed varint");
+	}
+
+	private static long zigzag(long value) {
+		return value << 1 ^ value >> 63;
+	}
+
+	private static long unzigzag(long value) {
+		return value >>> 1 ^ -(value & 1);
+	}
+
+}
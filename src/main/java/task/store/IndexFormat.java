@@ -0,0 +1,181 @@
+package task.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary layout of the index file.
+ * <p>
+ * The file starts with a header made of the magic number and the format version followed by the index records.
+ * Every record starts with the flags keeping the deletion mark in the lowest bit, the compression algorithm of the object
+ * in the next two bits and the key encoding in the fourth bit, so the deletion mark is updated in place.
+ * <p>
+ * Records of the version 1 have the fixed part (flags, file number, data offset, data size and key length) followed by UTF-8 key bytes.
+ * Records of the version 2 are encoded by {@link IndexCodec} relatively to the preceding record.
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+final class IndexFormat {
+
+	static final int MAGIC = 0x53494458; // "SIDX"
+	static final byte VERSION_1 = 1;
+	static final byte VERSION_2 = 2;
+	static final byte VERSION = VERSION_2;
+	static final int LEGACY_VERSION = 0;
+	static final int HEADER_SIZE = 5;
+	static final int FIXED_RECORD_SIZE = 19;
+	static final int MAX_KEY_LENGTH = 0xFFFF;
+
+	static final byte DELETED = 1;
+	static final int COMPRESSION_SHIFT = 1;
+	static final int COMPRESSION_MASK = 0x3;
+	static final byte UUID_KEY = 1 << 3;
+
+	private IndexFormat() {
+	}
+
+	/**
+	 * Writes the header of the current version into the empty index file
+	 * @param channel - index file channel
+	 * @throws IOException
+	 */
+	static void writeHeader(FileChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).put(VERSION);
+		buffer.flip();
+		channel.write(buffer, 0);
+	}
+
+	/**
+	 * Reads the version of the index file from its header
+	 * @param channel - index file channel
+	 * @return version of the format or LEGACY_VERSION if the file has no header
+	 * @throws IOException
+	 */
+	static int version(FileChannel channel) throws IOException {
+		if (channel.size() < HEADER_SIZE)
+			return LEGACY_VERSION;
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+		channel.read(buffer, 0);
+		if (buffer.getInt(0) != MAGIC)
+			return LEGACY_VERSION;
+		byte version = buffer.get(4);
+		if (version != VERSION_1 && version != VERSION_2)
+			throw new IOException("Unsupported index file version " + version);
+		return version;
+	}
+
+	/**
+	 * Computes the length of the UTF-8 encoded key without encoding it
+	 * @param key - key of the index
+	 * @return length of the encoded key
+	 */
+	static int keyLength(String key) {
+		int length = 0;
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (!Character.isSurrogate(c)) {
+				length += 3;
+			} else if (Character.isHighSurrogate(c) && i + 1 < key.length() && Character.isLowSurrogate(key.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else {
+				length++; // malformed surrogate is replaced with '?' as String.getBytes does
+			}
+		}
+		if (length > MAX_KEY_LENGTH)
+			throw new IllegalArgumentException("The key must not be longer than " + MAX_KEY_LENGTH + " bytes");
+		return length;
+	}
+
+	/**
+	 * Encodes the key to UTF-8
+	 * @param key - key of the index
+	 * @param dst - array receiving the encoded key, it must fit keyLength(key) bytes
+	 */
+	static void encodeKey(String key, byte[] dst) {
+		int p = 0;
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (c < 0x80) {
+				dst[p++] = (byte) c;
+			} else if (c < 0x800) {
+				dst[p++] = (byte) (0xC0 | c >> 6);
+				dst[p++] = (byte) (0x80 | c & 0x3F);
+			} else if (!Character.isSurrogate(c)) {
+				dst[p++] = (byte) (0xE0 | c >> 12);
+				dst[p++] = (byte) (0x80 | c >> 6 & 0x3F);
+				dst[p++] = (byte) (0x80 | c & 0x3F);
+			} else if (Character.isHighSurrogate(c) && i + 1 < key.length() && Character.isLowSurrogate(key.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, key.charAt(++i));
+				dst[p++] = (byte) (0xF0 | cp >> 18);
+				dst[p++] = (byte) (0x80 | cp >> 12 & 0x3F);
+				dst[p++] = (byte) (0x80 | cp >> 6 & 0x3F);
+				dst[p++] = (byte) (0x80 | cp & 0x3F);
+			} else {
+				dst[p++] = (byte) '?';
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the key is a UUID in the canonical form produced by UUID.toString(), such a key is stored as 16 bytes
+	 * @param key - key of the index
+	 * @return true if the key is a canonical UUID
+	 */
+	static boolean isUuid(String key) {
+		if (key.length() != 36)
+			return false;
+		for (int i = 0; i < 36; i++) {
+			char c = key.charAt(i);
+			if (i == 8 || i == 13 || i == 18 || i == 23) {
+				if (c != '-')
+					return false;
+			} else if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 
+	 * @param index - index
+	 * @return flags of the index record
+	 */
+	static byte flags(Index index) {
+		return (byte) ((index.isDeleted() ? DELETED : 0) | index.getCompression().getId() << COMPRESSION_SHIFT
+				| (isUuid(index.getKey()) ? UUID_KEY : 0));
+	}
+
+	/**
+	 * Reads the index record of the version 1 from the buffer
+	 * @param buffer - source buffer
+	 * @param indexOffset - offset of the record in the index file
+	 * @return read index or null if the buffer doesn't contain the whole record, the buffer position is left unchanged in this case
+	 */
+	static Index readFixed(ByteBuffer buffer, long indexOffset) {
+		int start = buffer.position();
+		if (buffer.remaining() < FIXED_RECORD_SIZE)
+			return null;
+		int keyLength = buffer.getShort(start + FIXED_RECORD_SIZE - 2) & 0xFFFF;
+		if (buffer.remaining() < FIXED_RECORD_SIZE + keyLength)
+			return null;
+		byte flags = buffer.get();
+		int fileNumber = buffer.getInt();
+		long dataOffset = buffer.getLong();
+		int dataSize = buffer.getInt();
+		buffer.getShort();
+		String key = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), keyLength, StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + keyLength);
+		return new Index((flags & DELETED) != 0, fileNumber, dataOffset, dataSize, indexOffset, key,
+				Compression.forId(flags >>> COMPRESSION_SHIFT & COMPRESSION_MASK));
+	}
+
+}
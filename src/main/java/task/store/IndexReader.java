@@ -0,0 +1,81 @@
+package task.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Sequential reader of index records which loads the index file by large chunks
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+class IndexReader {
+
+	private static final int BUFFER_SIZE = 1 << 17; // 128Kb, the largest record fits
+
+	private final FileChannel channel;
+	private final IndexCodec codec;
+	private final ByteBuffer buffer;
+	private final long limit;
+	private long bufferOffset;
+	private long readPosition;
+
+	/**
+	 * Constructs the reader of the index file
+	 * @param channel - index file channel
+	 * @param position - offset of the first record in the index file
+	 * @param codec - codec of the index file positioned at the first record
+	 * @throws IOException
+	 */
+	IndexReader(FileChannel channel, long position, IndexCodec codec) throws IOException {
+		this.channel = channel;
+		this.codec = codec;
+		this.limit = channel.size();
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		this.buffer.flip();
+		this.bufferOffset = position;
+		this.readPosition = position;
+	}
+
+	/**
+	 * 
+	 * @return true if the index file has more records
+	 */
+	boolean hasNext() {
+		return buffer.hasRemaining() || readPosition < limit;
+	}
+
+	/**
+	 * Reads the next index record
+	 * @return read index
+	 * @throws IOException
+	 */
+	Index next() throws IOException {
+		Index index = codec.read(buffer, bufferOffset + buffer.position());
+		if (index == null) {
+			fill();
+			index = codec.read(buffer, bufferOffset + buffer.position());
+			if (index == null)
+				throw new IOException("The index file is truncated at offset " + (bufferOffset + buffer.position()));
+		}
+		return index;
+	}
+
+	/**
+	 * Moves unread bytes to the beginning of the buffer and reads the following part of the file after them
+	 * @throws IOException
+	 */
+	private void fill() throws IOException {
+		bufferOffset += buffer.position();
+		buffer.compact();
+		while (buffer.hasRemaining() && readPosition < limit) {
+			int read = channel.read(buffer, readPosition);
+			if (read < 0)
+				break;
+			readPosition += read;
+		}
+		buffer.flip();
+	}
+
+}
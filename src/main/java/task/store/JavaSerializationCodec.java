@@ -0,0 +1,121 @@
+package task.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * The default codec of the Store based on the standard Java serialization.
+ * <p>
+ * Being bound to a class dictionary the codec omits the stream header and replaces every class descriptor
+ * with its identifier in the dictionary. Values written with the standard stream header are still readable in this mode.
+ * 
+ * @author Fedor Trofimov
+ * @param <T> The type of a value in the Store
+ */
+public class JavaSerializationCodec<T extends Serializable> implements Codec<T> {
+
+	private final ClassDictionary dictionary;
+
+	/**
+	 * Constructs the codec writing standard Java serialization streams
+	 */
+	public JavaSerializationCodec() {
+		this(null);
+	}
+
+	/**
+	 * Constructs the codec writing class descriptors to the dictionary
+	 * @param dictionary - class dictionary of the Store
+	 */
+	JavaSerializationCodec(ClassDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	@Override
+	public void encode(T value, OutputStream out) throws IOException {
+		ObjectOutputStream oos = dictionary == null ? new ObjectOutputStream(out) : new DictionaryOutputStream(out, dictionary);
+		oos.writeObject(value);
+		oos.flush();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T decode(ByteBuffer buffer) throws IOException,
+			ClassNotFoundException {
+		InputStream in = new ByteBufferInputStream(buffer);
+		ObjectInputStream ois = dictionary == null || hasStreamHeader(buffer) ? new ObjectInputStream(in) : new DictionaryInputStream(in, dictionary);
+		return (T) ois.readObject();
+	}
+
+	private static boolean hasStreamHeader(ByteBuffer buffer) {
+		return buffer.remaining() >= 2 && buffer.getShort(buffer.position()) == ObjectStreamConstants.STREAM_MAGIC;
+	}
+
+	/**
+	 * Object stream writing identifiers of class descriptors
+	 */
+	private static class DictionaryOutputStream extends ObjectOutputStream {
+
+		private final ClassDictionary dictionary;
+
+		DictionaryOutputStream(OutputStream out, ClassDictionary dictionary) throws IOException {
+			super(out);
+			this.dictionary = dictionary;
+		}
+
+		@Override
+		protected void writeStreamHeader() {
+			// the stream is recognized by the absence of the header
+		}
+
+		@Override
+		protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+			int id = dictionary.idOf(desc);
+			while ((id & ~0x7F) != 0) {
+				write(id & 0x7F | 0x80);
+				id >>>= 7;
+			}
+			write(id);
+		}
+
+	}
+
+	/**
+	 * Object stream resolving identifiers of class descriptors
+	 */
+	private static class DictionaryInputStream extends ObjectInputStream {
+
+		private final ClassDictionary dictionary;
+
+		DictionaryInputStream(InputStream in, ClassDictionary dictionary) throws IOException {
+			super(in);
+			this.dictionary = dictionary;
+		}
+
+		@Override
+		protected void readStreamHeader() {
+			// the stream has no header
+		}
+
+		@Override
+		protected ObjectStreamClass readClassDescriptor() throws IOException {
+			int id = 0;
+			for (int shift = 0;; shift += 7) {
+				int b = readUnsignedByte();
+				id |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+					break;
+			}
+			return dictionary.descriptor(id);
+		}
+
+	}
+
+}
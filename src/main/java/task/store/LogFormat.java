@@ -0,0 +1,49 @@
+package task.store;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Layout of the single-log format where every record of a log file describes itself.
+ * A record is a header followed by the UTF-8 encoded key and the encoded value:
+ * CRC32 of the rest of the record (4 bytes), flags (1 byte), key length (2 bytes), value length (4 bytes).
+ * A hint file of a completed log file lists its records without values:
+ * flags (1 byte), key length (2 bytes), record offset (8 bytes), value length (4 bytes), key.
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+final class LogFormat {
+
+	static final int RECORD_HEADER_SIZE = 11;
+	static final int HINT_HEADER_SIZE = 15;
+
+	static final byte TOMBSTONE = 1;
+
+	private LogFormat() {
+	}
+
+	/**
+	 * Computes the checksum of the record
+	 * @param record - buffer holding the record from its position to its limit, they are left unchanged
+	 * @param crc - reusable checksum
+	 * @return checksum of the record without its checksum field
+	 */
+	static int checksum(ByteBuffer record, CRC32 crc) {
+		ByteBuffer body = record.duplicate();
+		body.position(body.position() + 4);
+		crc.reset();
+		crc.update(body);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Offset of the value from the start of its record
+	 * @param keyLength - length of the encoded key
+	 * @return offset of the value
+	 */
+	static int valueOffset(int keyLength) {
+		return RECORD_HEADER_SIZE + keyLength;
+	}
+
+}
@@ -0,0 +1,131 @@
+package task.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Sequential reader of log records which loads the log file by large chunks.
+ * Reading stops at the end of the file or at a torn or corrupted record.
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+class LogReader {
+
+	private static final int BUFFER_SIZE = 1 << 17; // 128Kb
+
+	private final FileChannel channel;
+	private final long limit;
+	private final CRC32 crc = new CRC32();
+	private ByteBuffer buffer;
+	private long bufferOffset;
+	private long readPosition;
+
+	private long recordOffset;
+	private byte flags;
+	private String key;
+	private int keyLength;
+	private int valueLength;
+
+	/**
+	 * Constructs the reader of the log file
+	 * @param channel - log file channel
+	 * @throws IOException
+	 */
+	LogReader(FileChannel channel) throws IOException {
+		this.channel = channel;
+		this.limit = channel.size();
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		this.buffer.flip();
+	}
+
+	/**
+	 * Reads the next record
+	 * @return true if the record is read, false at the end of the file or at a torn or corrupted record
+	 * @throws IOException
+	 */
+	boolean next() throws IOException {
+		if (!ensure(LogFormat.RECORD_HEADER_SIZE))
+			return false;
+		int start = buffer.position();
+		int keyLength = buffer.getShort(start + 5) & 0xFFFF;
+		int valueLength = buffer.getInt(start + 7);
+		long recordLength = (long) LogFormat.valueOffset(keyLength) + valueLength;
+		if (valueLength < 0 || recordLength > Integer.MAX_VALUE - 8 || !ensure((int) recordLength))
+			return false;
+		start = buffer.position();
+		ByteBuffer record = buffer.duplicate();
+		record.limit(start + (int) recordLength);
+		if (LogFormat.checksum(record, crc) != buffer.getInt(start))
+			return false;
+
+		this.recordOffset = bufferOffset + start;
+		this.flags = buffer.get(start + 4);
+		this.keyLength = keyLength;
+		this.valueLength = valueLength;
+		this.key = new String(buffer.array(), start + LogFormat.RECORD_HEADER_SIZE, keyLength, StandardCharsets.UTF_8);
+		buffer.position(start + (int) recordLength);
+		return true;
+	}
+
+	/**
+	 * 
+	 * @return end of the last read record
+	 */
+	long end() {
+		return bufferOffset + buffer.position();
+	}
+
+	long getRecordOffset() {
+		return recordOffset;
+	}
+
+	byte getFlags() {
+		return flags;
+	}
+
+	String getKey() {
+		return key;
+	}
+
+	int getKeyLength() {
+		return keyLength;
+	}
+
+	int getValueLength() {
+		return valueLength;
+	}
+
+	/**
+	 * Makes the specified number of bytes available in the buffer
+	 * @param length - number of bytes
+	 * @return true if the bytes are available, false if the file ends before them
+	 * @throws IOException
+	 */
+	private boolean ensure(int length) throws IOException {
+		if (buffer.remaining() >= length)
+			return true;
+		if (end() + length > limit)
+			return false;
+		bufferOffset += buffer.position();
+		if (buffer.capacity() < length) {
+			ByteBuffer newBuffer = ByteBuffer.allocate(length);
+			newBuffer.put(buffer);
+			buffer = newBuffer;
+		} else {
+			buffer.compact();
+		}
+		while (buffer.hasRemaining() && readPosition < limit) {
+			int read = channel.read(buffer, readPosition);
+			if (read < 0)
+				break;
+			readPosition += read;
+		}
+		buffer.flip();
+		return buffer.remaining() >= length;
+	}
+
+}
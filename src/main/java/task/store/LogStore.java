@@ -0,0 +1,591 @@
+package task.store;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Appendable-only object Store persisted in a single log on a disk.
+ * Every record of the log holds both the key and the value, so an append is one sequential write into one file.
+ * On completion of a log file a compact hint file listing its records without values is written,
+ * the Store is reloaded from the hint files and the last log file.
+ * Operations of the Store are synchronized, so it can be shared between threads.
+ * 
+ * @author Fedor Trofimov
+ * @param <T> The type of a value in the Store
+ */
+public class LogStore<T extends Serializable> implements AppendableStore<T> {
+
+	private Map<String, Index> indexMap;
+	private Codec<T> codec;
+	private ByteBufferOutputStream recordBuffer = new ByteBufferOutputStream(1 << 12);
+	private ByteBufferOutputStream hintBuffer = new ByteBufferOutputStream(1 << 12);
+	private byte[] keyBuffer = new byte[64];
+	private CRC32 crc = new CRC32();
+	private List<FileChannel> lfcs;
+	private GroupSync groupSync;
+
+	private int capacity;
+	private int size;
+	private long logEnd;
+	private float loadFactor;
+	private long segmentSize;
+	private DurabilityPolicy durabilityPolicy;
+	private String directory;
+
+	private final String LFILE_EXT = ".log";
+	private final String HFILE_EXT = ".hnt";
+	private final String TMP_FILE_EXT = ".tmp";
+	private final String FILE_PREFIX = "log";
+	private final String FILE_COPY_PREFIX = "_copy";
+	private final String COMPACTION_FILE = "log.compaction";
+
+	/**
+	 * Constructs this Store persisted on a disk in the specified FS directory
+	 * @param directory - directory where placed log and hint files of this Store, the directory must be existed
+	 */
+	public LogStore(String directory) {
+		this(directory, new JavaSerializationCodec<T>(), new StoreConfig());
+	}
+
+	/**
+	 * Constructs this Store persisted on a disk in the specified FS directory
+	 * @param directory - directory where placed log and hint files of this Store, the directory must be existed
+	 * @param codec - codec converting values to bytes and back
+	 */
+	public LogStore(String directory, Codec<T> codec) {
+		this(directory, codec, new StoreConfig());
+	}
+
+	/**
+	 * Constructs this Store persisted on a disk in the specified FS directory
+	 * @param directory - directory where placed log and hint files of this Store, the directory must be existed
+	 * @param codec - codec converting values to bytes and back
+	 * @param config - settings of this Store, the load factor, segment size and durability policy are applicable
+	 */
+	public LogStore(String directory, Codec<T> codec, StoreConfig config) {
+		if (config.getLoadFactor() <= 0)
+			throw new IllegalArgumentException("The load factor must be positive");
+		if (codec == null)
+			throw new IllegalArgumentException("The codec must be specified");
+		if (config.getSegmentSize() <= 0)
+			throw new IllegalArgumentException("The segment size must be positive");
+		if (config.getDurabilityPolicy() == null)
+			throw new IllegalArgumentException("The durability policy must be specified");
+		if (config.getCompression() != Compression.NONE || config.isClassDictionary()
+				|| config.getWriteBufferSize() > 0 || config.isPreallocation())
+			throw new IllegalArgumentException("The compression, class dictionary, write buffer and preallocation aren't applicable to the log");
+		this.directory = directory;
+		this.codec = codec;
+		this.loadFactor = config.getLoadFactor();
+		this.segmentSize = config.getSegmentSize();
+		this.durabilityPolicy = config.getDurabilityPolicy();
+		indexMap = new HashMap<>();
+		try {
+			recoverCompaction();
+			collectLogFiles();
+			loadStore();
+		} catch (IOException exc) {
+			throw new RuntimeException("An error has occurred during data restore", exc);
+		}
+		groupSync = new GroupSync(durabilityPolicy);
+	}
+
+	/**
+	 * Puts the value into this Store with the associated key.
+	 * 
+	 * @param key - key with which the specified value is to be associated
+	 * @param value - value to be associated with the specified key
+	 */
+	public synchronized void append(String key, T value) {
+
+		if (indexMap.containsKey(key))
+			throw new IllegalArgumentException("Object with the specified key has already existed");
+
+		Index index;
+		try {
+			int keyLength = startRecord(key);
+			codec.encode(value, recordBuffer);
+			index = appendRecord(key, keyLength, (byte) 0);
+		} catch (IOException exc) {
+			throw new RuntimeException(exc);
+		}
+
+		// write into a memory
+		indexMap.put(key, index);
+		capacity++;
+		size++;
+		commit();
+	}
+
+	/**
+	 * Returns the value to which the specified key is mapped, or null if this Store contains no value for the key.
+	 * 
+	 * @param key - key whose associated value is to be returned
+	 * @return value to which the specified key is associated, or null if this Store contains no mapping for the key
+	 */
+	public synchronized T get(String key) {
+		Index index = indexMap.get(key);
+		if (index == null)
+			return null;
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(index.getDataSize());
+			read(index.getFileNumber(), index.getDataOffset(), buffer);
+			buffer.flip();
+			return codec.decode(buffer);
+		} catch (IOException | ClassNotFoundException exc) {
+			throw new RuntimeException(exc);
+		}
+	}
+
+	/**
+	 * Removes the value for the specified key from this Store if present.
+	 * A tombstone record is appended to the log.
+	 * 
+	 * @param key - key whose value is to be removed from the Store
+	 * @return true if the value associated with the key exists, false if there was no value for the key
+	 */
+	public synchronized boolean remove(String key) {
+		Index index = indexMap.get(key);
+		if (index == null)
+			return false;
+		try {
+			appendRecord(key, startRecord(key), LogFormat.TOMBSTONE);
+		} catch (IOException exc) {
+			throw new RuntimeException(exc);
+		}
+		indexMap.remove(key);
+		size--;
+
+		float ratio = (float) size / capacity;
+		if (ratio < loadFactor)
+			relocate();
+		commit();
+		return true;
+	}
+
+	/**
+	 * Generates a unique key provided as UUID string
+	 * 
+	 * @return a randomly generated 16 byte key
+	 */
+	public String generateKey() {
+		return UUID.randomUUID().toString();
+	}
+
+	/**
+	 * Closes file channels resources
+	 */
+	public synchronized void close() {
+		try {
+			groupSync.close();
+			for (FileChannel channel : lfcs)
+				channel.close();
+		} catch (IOException exc) {
+			throw new RuntimeException(exc);
+		}
+	}
+
+	/**
+	 * Starts the record in the record buffer, the header is reserved and the key is written after it
+	 * @param key - key of the record
+	 * @return length of the encoded key
+	 */
+	private int startRecord(String key) {
+		int keyLength = IndexFormat.keyLength(key);
+		if (keyBuffer.length < keyLength)
+			keyBuffer = new byte[Math.max(keyLength, keyBuffer.length << 1)];
+		IndexFormat.encodeKey(key, keyBuffer);
+		recordBuffer.reset();
+		recordBuffer.ensureCapacity(LogFormat.RECORD_HEADER_SIZE);
+		recordBuffer.truncate(LogFormat.RECORD_HEADER_SIZE);
+		recordBuffer.write(keyBuffer, 0, keyLength);
+		return keyLength;
+	}
+
+	/**
+	 * Completes the header of the record in the record buffer and writes the record to the end of the last log file
+	 * @param key - key of the record
+	 * @param keyLength - length of the encoded key
+	 * @param flags - flags of the record
+	 * @return the index constructed for the record
+	 * @throws IOException
+	 */
+	private Index appendRecord(String key, int keyLength, byte flags) throws IOException {
+		ByteBuffer record = recordBuffer.buffer();
+		record.flip();
+		int valueLength = record.remaining() - LogFormat.valueOffset(keyLength);
+		record.put(4, flags).putShort(5, (short) keyLength).putInt(7, valueLength);
+		record.putInt(0, LogFormat.checksum(record, crc));
+
+		int lastFileNumber = lfcs.size() - 1;
+		FileChannel lfc = lfcs.get(lastFileNumber);
+		long recordOffset = logEnd;
+		long position = recordOffset;
+		while (record.hasRemaining())
+			position += lfc.write(record, position);
+		groupSync.written(lfc, position - recordOffset);
+		logEnd = position;
+
+		Index index = new Index(flags == LogFormat.TOMBSTONE, lastFileNumber, recordOffset + LogFormat.valueOffset(keyLength),
+				valueLength, recordOffset, key);
+		addHint(hintBuffer, flags, keyLength, recordOffset, valueLength);
+
+		// create a new log file on reaching threshold for the last log file
+		if (logEnd > segmentSize) {
+			writeHintFile(lastFileNumber, "", hintBuffer);
+			createNextLogFile(lfcs, "");
+			logEnd = 0;
+		}
+		return index;
+	}
+
+	/**
+	 * Adds the record to the hints, the key is taken from the key buffer
+	 * @param hints - hints of the log file
+	 * @param flags - flags of the record
+	 * @param keyLength - length of the encoded key
+	 * @param recordOffset - offset of the record in the log file
+	 * @param valueLength - length of the value
+	 */
+	private void addHint(ByteBufferOutputStream hints, byte flags, int keyLength, long recordOffset, int valueLength) {
+		hints.ensureCapacity(LogFormat.HINT_HEADER_SIZE + keyLength);
+		hints.buffer().put(flags).putShort((short) keyLength).putLong(recordOffset).putInt(valueLength);
+		hints.write(keyBuffer, 0, keyLength);
+	}
+
+	/**
+	 * Persists the hints of the completed log file, the file appears at once when it is completely written
+	 * @param fileNumber - ordinal number of the log file
+	 * @param suffix - suffix of the file name
+	 * @param hints - hints of the log file, they are discarded afterwards
+	 * @throws IOException
+	 */
+	private void writeHintFile(int fileNumber, String suffix, ByteBufferOutputStream hints) throws IOException {
+		Path path = Paths.get(constructHintFileName(fileNumber, suffix));
+		Path tmpPath = Paths.get(path.toString() + TMP_FILE_EXT);
+		try (FileChannel channel = new RandomAccessFile(tmpPath.toFile(), "rw").getChannel()) {
+			channel.truncate(0);
+			ByteBuffer buffer = hints.buffer();
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			if (durabilityPolicy.getMode() != DurabilityPolicy.Mode.NONE)
+				channel.force(false);
+		}
+		hints.reset();
+		Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reloads this Store from hint files and log files persisted on a disk.
+	 * A log file having no hint file is scanned, the torn tail of the last log file is cut off.
+	 * 
+	 * @throws IOException
+	 */
+	private void loadStore() throws IOException {
+		int lastFileNumber = lfcs.size() - 1;
+		for (int i = 0; i <= lastFileNumber; i++) {
+			Path hintPath = Paths.get(constructHintFileName(i, ""));
+			if (i < lastFileNumber && Files.exists(hintPath)) {
+				loadHintFile(i, hintPath);
+				continue;
+			}
+			LogReader reader = new LogReader(lfcs.get(i));
+			while (reader.next()) {
+				int keyLength = reader.getKeyLength();
+				if (keyBuffer.length < keyLength)
+					keyBuffer = new byte[keyLength];
+				IndexFormat.encodeKey(reader.getKey(), keyBuffer);
+				addHint(hintBuffer, reader.getFlags(), keyLength, reader.getRecordOffset(), reader.getValueLength());
+				load(reader.getFlags(), reader.getKey(), i, reader.getRecordOffset(), keyLength, reader.getValueLength());
+			}
+			if (i < lastFileNumber) {
+				if (reader.end() < lfcs.get(i).size())
+					throw new IOException("The log file " + i + " is corrupted at offset " + reader.end());
+				writeHintFile(i, "", hintBuffer);
+			} else {
+				logEnd = reader.end();
+				lfcs.get(i).truncate(logEnd);
+			}
+		}
+	}
+
+	/**
+	 * Loads records listed in the hint file
+	 * @param fileNumber - ordinal number of the log file
+	 * @param path - path of the hint file
+	 * @throws IOException
+	 */
+	private void loadHintFile(int fileNumber, Path path) throws IOException {
+		ByteBuffer hints = ByteBuffer.wrap(Files.readAllBytes(path));
+		while (hints.hasRemaining()) {
+			if (hints.remaining() < LogFormat.HINT_HEADER_SIZE)
+				throw new EOFException("The hint file " + fileNumber + " is truncated");
+			byte flags = hints.get();
+			int keyLength = hints.getShort() & 0xFFFF;
+			long recordOffset = hints.getLong();
+			int valueLength = hints.getInt();
+			if (hints.remaining() < keyLength)
+				throw new EOFException("The hint file " + fileNumber + " is truncated");
+			String key = new String(hints.array(), hints.position(), keyLength, StandardCharsets.UTF_8);
+			hints.position(hints.position() + keyLength);
+			load(flags, key, fileNumber, recordOffset, keyLength, valueLength);
+		}
+	}
+
+	/**
+	 * Applies the record read from a disk to the in-memory index
+	 * @param flags - flags of the record
+	 * @param key - key of the record
+	 * @param fileNumber - ordinal number of the log file
+	 * @param recordOffset - offset of the record in the log file
+	 * @param keyLength - length of the encoded key
+	 * @param valueLength - length of the value
+	 */
+	private void load(byte flags, String key, int fileNumber, long recordOffset, int keyLength, int valueLength) {
+		if (flags == LogFormat.TOMBSTONE) {
+			if (indexMap.remove(key) != null)
+				size--;
+			return;
+		}
+		Index index = new Index(false, fileNumber, recordOffset + LogFormat.valueOffset(keyLength), valueLength,
+				recordOffset, key);
+		if (indexMap.put(key, index) != null)
+			size--;
+		capacity++;
+		size++;
+	}
+
+	/**
+	 * Reads bytes from the log file
+	 * @param fileNumber - ordinal number of the log file
+	 * @param position - position in the log file
+	 * @param dst - buffer receiving the bytes, it is filled up to its limit
+	 * @throws IOException
+	 */
+	private void read(int fileNumber, long position, ByteBuffer dst) throws IOException {
+		FileChannel lfc = lfcs.get(fileNumber);
+		while (dst.hasRemaining()) {
+			int read = lfc.read(dst, position);
+			if (read < 0)
+				throw new EOFException("The log file " + fileNumber + " is truncated");
+			position += read;
+		}
+	}
+
+	/**
+	 * Flushes written files according to the durability policy
+	 */
+	private void commit() {
+		try {
+			groupSync.commit();
+		} catch (IOException exc) {
+			throw new RuntimeException("Unable to flush the Store files", exc);
+		}
+	}
+
+	/**
+	 * Rewrites live records into new log files dropping removed values and tombstones
+	 */
+	private void relocate() {
+		List<Index> indexes = new ArrayList<>(indexMap.values());
+		indexes.sort(Comparator.comparingInt(Index::getFileNumber).thenComparingLong(Index::getIndexOffset));
+
+		List<FileChannel> newLogChannels = new ArrayList<>();
+		createNextLogFile(newLogChannels, FILE_COPY_PREFIX);
+		ByteBufferOutputStream newHints = new ByteBufferOutputStream(1 << 12);
+		Map<String, Index> newIndexMap = new HashMap<>();
+		long newLogEnd = 0;
+
+		try {
+			for (Index index : indexes) {
+				// copy the record as it is
+				int keyOffset = LogFormat.RECORD_HEADER_SIZE;
+				int keyLength = (int) (index.getDataOffset() - index.getIndexOffset()) - keyOffset;
+				ByteBuffer record = ByteBuffer.allocate(LogFormat.valueOffset(keyLength) + index.getDataSize());
+				read(index.getFileNumber(), index.getIndexOffset(), record);
+				record.flip();
+				int fileNumber = newLogChannels.size() - 1;
+				FileChannel lfc = newLogChannels.get(fileNumber);
+				long recordOffset = newLogEnd;
+				while (record.hasRemaining())
+					newLogEnd += lfc.write(record, newLogEnd);
+
+				if (keyBuffer.length < keyLength)
+					keyBuffer = new byte[keyLength];
+				System.arraycopy(record.array(), keyOffset, keyBuffer, 0, keyLength);
+				addHint(newHints, (byte) 0, keyLength, recordOffset, index.getDataSize());
+				newIndexMap.put(index.getKey(), new Index(false, fileNumber, recordOffset + LogFormat.valueOffset(keyLength),
+						index.getDataSize(), recordOffset, index.getKey()));
+
+				if (newLogEnd > segmentSize) {
+					writeHintFile(fileNumber, FILE_COPY_PREFIX, newHints);
+					createNextLogFile(newLogChannels, FILE_COPY_PREFIX);
+					newLogEnd = 0;
+				}
+			}
+
+			// the new files must be durable before they replace the previous ones
+			if (durabilityPolicy.getMode() != DurabilityPolicy.Mode.NONE) {
+				for (FileChannel channel : newLogChannels)
+					channel.force(false);
+			}
+			for (FileChannel channel : newLogChannels)
+				channel.close();
+			writeCompactionFile(newLogChannels.size());
+		} catch (IOException exc) {
+			// the previous files are intact, the Store goes on with them
+			try {
+				for (FileChannel channel : newLogChannels)
+					channel.close();
+				deleteCopies();
+			} catch (IOException e) {
+				exc.addSuppressed(e);
+			}
+			throw new IllegalStateException("An error has occurred during data relocation", exc);
+		}
+
+		try {
+			// the compaction is committed, the previous files are replaced on the next opening if it's interrupted
+			for (FileChannel channel : lfcs)
+				channel.close();
+			completeCompaction(newLogChannels.size());
+			collectLogFiles();
+		} catch (IOException exc) {
+			throw new IllegalStateException("An error has occurred during data relocation, it's completed on the next opening", exc);
+		}
+
+		indexMap = newIndexMap;
+		hintBuffer = newHints;
+		logEnd = newLogEnd;
+		capacity = size;
+	}
+
+	/**
+	 * Writes the file committing the compaction, the new files replace the previous ones once it exists
+	 * @param count - number of the new log files
+	 * @throws IOException
+	 */
+	private void writeCompactionFile(int count) throws IOException {
+		Path path = Paths.get(directory, COMPACTION_FILE);
+		Path tmpPath = Paths.get(path.toString() + TMP_FILE_EXT);
+		try (FileChannel channel = new RandomAccessFile(tmpPath.toFile(), "rw").getChannel()) {
+			channel.truncate(0);
+			ByteBuffer buffer = ByteBuffer.allocate(4).putInt(0, count);
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			if (durabilityPolicy.getMode() != DurabilityPolicy.Mode.NONE)
+				channel.force(false);
+		}
+		Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Completes the compaction interrupted after its commit, or discards the files of the uncommitted one
+	 * @throws IOException
+	 */
+	private void recoverCompaction() throws IOException {
+		Path path = Paths.get(directory, COMPACTION_FILE);
+		if (Files.exists(path)) {
+			byte[] count = Files.readAllBytes(path);
+			if (count.length != 4)
+				throw new IOException("The compaction file is corrupted");
+			completeCompaction(ByteBuffer.wrap(count).getInt());
+		} else {
+			deleteCopies();
+		}
+	}
+
+	/**
+	 * Replaces the previous log and hint files by the new ones. Every step can be repeated,
+	 * so the replacement interrupted at any point is completed by the next call.
+	 * @param count - number of the new log files
+	 * @throws IOException
+	 */
+	private void completeCompaction(int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			// the hint file is replaced before its log file, the last log file has no hint file
+			Path hintCopy = Paths.get(constructHintFileName(i, FILE_COPY_PREFIX));
+			if (Files.exists(hintCopy))
+				Files.move(hintCopy, Paths.get(constructHintFileName(i, "")), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			else if (i == count - 1)
+				Files.deleteIfExists(Paths.get(constructHintFileName(i, "")));
+			Path logCopy = Paths.get(constructLogFileName(i, FILE_COPY_PREFIX));
+			if (Files.exists(logCopy))
+				Files.move(logCopy, Paths.get(constructLogFileName(i, "")), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		// delete the previous files following the new ones, the hint files first
+		for (String ext : new String[] { HFILE_EXT, LFILE_EXT }) {
+			String[] names = new File(directory).list((dir, name) -> name.matches(FILE_PREFIX + "_\\d+\\" + ext));
+			for (String name : names) {
+				int number = Integer.parseInt(name.substring(FILE_PREFIX.length() + 1, name.length() - ext.length()));
+				if (number >= count)
+					Files.delete(Paths.get(directory, name));
+			}
+		}
+		deleteCopies();
+		Files.delete(Paths.get(directory, COMPACTION_FILE));
+	}
+
+	/**
+	 * Deletes the files written by the compaction which haven't replaced the previous ones
+	 * @throws IOException
+	 */
+	private void deleteCopies() throws IOException {
+		String[] names = new File(directory).list((dir, name) -> name.startsWith(FILE_PREFIX + "_") && name.contains(FILE_COPY_PREFIX));
+		for (String name : names)
+			Files.delete(Paths.get(directory, name));
+	}
+
+	/**
+	 * Opens the log files of this Store, the first one is created if there are no log files
+	 * @throws IOException
+	 */
+	private void collectLogFiles() throws IOException {
+		String[] names = new File(directory).list((dir, name) -> name.matches(FILE_PREFIX + "_\\d+\\" + LFILE_EXT));
+		Arrays.sort(names);
+		lfcs = new ArrayList<>();
+		for (String name : names)
+			lfcs.add(new RandomAccessFile(new File(directory, name), "rw").getChannel());
+		if (lfcs.isEmpty())
+			createNextLogFile(lfcs, "");
+	}
+
+	private void createNextLogFile(List<FileChannel> logChannels, String suffix) {
+		String path = constructLogFileName(logChannels.size(), suffix);
+		try {
+			FileChannel ch = new RandomAccessFile(path, "rw").getChannel();
+			ch.force(true);
+			logChannels.add(ch);
+		} catch (IOException exc) {
+			throw new RuntimeException("Unable to open the log file '" + path + "'", exc);
+		}
+	}
+
+	private String constructLogFileName(int number, String suffix) {
+		return Paths.get(directory, FILE_PREFIX + "_" + String.format("%04d", number) + suffix + LFILE_EXT).toAbsolutePath().toString();
+	}
+
+	private String constructHintFileName(int number, String suffix) {
+		return Paths.get(directory, FILE_PREFIX + "_" + String.format("%04d", number) + suffix + HFILE_EXT).toAbsolutePath().toString();
+	}
+
+}
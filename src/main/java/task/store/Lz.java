@@ -0,0 +1,174 @@
+package task.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * LZ77 compression producing the LZ4 block format.
+ * <p>
+ * The block is a sequence of tokens, every token is followed by literals and by a back reference to the already decompressed data.
+ * The last token has literals only.
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+final class Lz {
+
+	private static final int MIN_MATCH = 4;
+	private static final int LAST_LITERALS = 5;
+	private static final int MF_LIMIT = 12;
+	private static final int MAX_DISTANCE = 0xFFFF;
+	private static final int HASH_LOG = 12;
+	private static final int RUN_MASK = 0x0F;
+
+	private Lz() {
+	}
+
+	/**
+	 * 
+	 * @param len - length of the source data
+	 * @return the largest possible size of the compressed data
+	 */
+	static int maxCompressedLength(int len) {
+		return len + len / 255 + 16;
+	}
+
+	/**
+	 * 
+	 * @return hash table of the compression which may be reused by subsequent compressions
+	 */
+	static int[] newTable() {
+		return new int[1 << HASH_LOG];
+	}
+
+	/**
+	 * Compresses the data
+	 * @param src - source array
+	 * @param srcOff - offset of the data in the source array
+	 * @param srcLen - length of the data
+	 * @param dst - destination array having at least maxCompressedLength(srcLen) bytes after dstOff
+	 * @param dstOff - offset in the destination array
+	 * @param table - hash table created by newTable()
+	 * @return length of the compressed data
+	 */
+	static int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int[] table) {
+		int srcEnd = srcOff + srcLen;
+		int matchLimit = srcEnd - LAST_LITERALS;
+		int mfLimit = srcEnd - MF_LIMIT;
+		int anchor = srcOff;
+		int sp = srcOff;
+		int dp = dstOff;
+		Arrays.fill(table, 0);
+
+		while (sp < mfLimit) {
+			int sequence = readInt(src, sp);
+			int h = hash(sequence);
+			int ref = srcOff + table[h];
+			table[h] = sp - srcOff;
+			if (ref >= sp || sp - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+				sp++;
+				continue;
+			}
+			// extend the match backwards and forwards
+			while (sp > anchor && ref > srcOff && src[sp - 1] == src[ref - 1]) {
+				sp--;
+				ref--;
+			}
+			int matchLen = MIN_MATCH;
+			while (sp + matchLen < matchLimit && src[sp + matchLen] == src[ref + matchLen])
+				matchLen++;
+
+			int tokenPos = dp++;
+			int literalLen = sp - anchor;
+			int token = Math.min(literalLen, RUN_MASK) << 4 | Math.min(matchLen - MIN_MATCH, RUN_MASK);
+			dp = writeLength(literalLen, dst, dp);
+			System.arraycopy(src, anchor, dst, dp, literalLen);
+			dp += literalLen;
+			int distance = sp - ref;
+			dst[dp++] = (byte) distance;
+			dst[dp++] = (byte) (distance >>> 8);
+			dp = writeLength(matchLen - MIN_MATCH, dst, dp);
+			dst[tokenPos] = (byte) token;
+
+			sp += matchLen;
+			anchor = sp;
+		}
+
+		// last literals
+		int literalLen = srcEnd - anchor;
+		dst[dp++] = (byte) (Math.min(literalLen, RUN_MASK) << 4);
+		dp = writeLength(literalLen, dst, dp);
+		System.arraycopy(src, anchor, dst, dp, literalLen);
+		return dp + literalLen - dstOff;
+	}
+
+	/**
+	 * Decompresses the data
+	 * @param src - buffer holding the compressed data in its remaining bytes
+	 * @param dst - destination array
+	 * @param dstOff - offset in the destination array
+	 * @param dstLen - length of the decompressed data
+	 * @throws IOException
+	 */
+	static void decompress(ByteBuffer src, byte[] dst, int dstOff, int dstLen) throws IOException {
+		int dp = dstOff;
+		int dstEnd = dstOff + dstLen;
+		try {
+			while (true) {
+				int token = src.get() & 0xFF;
+				int literalLen = readLength(token >>> 4, src);
+				if (literalLen > dstEnd - dp)
+					throw new IOException("Corrupted compressed value");
+				src.get(dst, dp, literalLen);
+				dp += literalLen;
+				if (dp == dstEnd)
+					return;
+
+				int distance = (src.get() & 0xFF) | (src.get() & 0xFF) << 8;
+				int matchLen = readLength(token & RUN_MASK, src) + MIN_MATCH;
+				int ref = dp - distance;
+				if (distance == 0 || ref < dstOff || matchLen > dstEnd - dp)
+					throw new IOException("Corrupted compressed value");
+				// byte by byte copy since the match may overlap the output
+				for (int i = 0; i < matchLen; i++)
+					dst[dp + i] = dst[ref + i];
+				dp += matchLen;
+			}
+		} catch (RuntimeException exc) {
+			throw new IOException("Corrupted compressed value", exc);
+		}
+	}
+
+	private static int writeLength(int len, byte[] dst, int dp) {
+		if (len < RUN_MASK)
+			return dp;
+		len -= RUN_MASK;
+		while (len >= 0xFF) {
+			dst[dp++] = (byte) 0xFF;
+			len -= 0xFF;
+		}
+		dst[dp++] = (byte) len;
+		return dp;
+	}
+
+	private static int readLength(int len, ByteBuffer src) {
+		if (len < RUN_MASK)
+			return len;
+		int b;
+		do {
+			b = src.get() & 0xFF;
+			len += b;
+		} while (b == 0xFF);
+		return len;
+	}
+
+	private static int readInt(byte[] src, int pos) {
+		return (src[pos] & 0xFF) | (src[pos + 1] & 0xFF) << 8 | (src[pos + 2] & 0xFF) << 16 | (src[pos + 3] & 0xFF) << 24;
+	}
+
+	private static int hash(int sequence) {
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+
+}
@@ -0,0 +1,220 @@
+package task.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounded cache of decoded values. The least recently used of a few sampled entries is the candidate for eviction.
+ * A new entry is admitted only if its key is accessed more frequently than the key of the candidate, so the keys
+ * read once don't displace the hot ones. The frequencies are estimated by a count-min sketch of 4-bit counters
+ * packed 16 into a long, which are halved periodically to forget the past accesses.
+ * The values are looked up without locking, the access time and the frequency of the key are updated atomically,
+ * only the changes of the cached entries are serialized.
+ *
+ * @author Fedor Trofimov
+ *
+ * @param <K> The type of a key
+ * @param <V> The type of a value
+ */
+final class ObjectCache<K, V> {
+
+	private static final int MAX_FREQUENCY = 15;
+	private static final long HALF_MASK = 0x7777777777777777L;
+	private static final int[] SEEDS = { 0x97cb3127, 0xb4b82e39, 0x7a6d4c3b, 0x2f8e1a6d };
+	private static final int EVICTION_SAMPLES = 8;
+
+	private final int capacity;
+	private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+	// entries in no particular order, the candidates for eviction are sampled from it
+	private final List<Entry<K, V>> residents = new ArrayList<>();
+	private final AtomicLongArray[] sketch;
+	private final int mask;
+	private final int sampleSize;
+	private final AtomicInteger additions = new AtomicInteger();
+	private final AtomicBoolean ageing = new AtomicBoolean();
+
+	/**
+	 * Constructs the cache
+	 * @param capacity - maximum number of the entries
+	 */
+	ObjectCache(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("The capacity must be positive");
+		this.capacity = capacity;
+		int width = Integer.highestOneBit(Math.max(16, Math.min(capacity, 1 << 28)) * 2 - 1);
+		sketch = new AtomicLongArray[SEEDS.length];
+		for (int row = 0; row < sketch.length; row++)
+			sketch[row] = new AtomicLongArray(width >>> 4);
+		mask = width - 1;
+		sampleSize = 10 * width;
+	}
+
+	/**
+	 * Returns the cached value and counts the access to the key, the method doesn't block
+	 * @param key - key of the value
+	 * @return the cached value, or null if the value isn't cached
+	 */
+	V get(K key) {
+		increment(key);
+		Entry<K, V> entry = entries.get(key);
+		if (entry == null)
+			return null;
+		entry.accessTime = System.nanoTime();
+		return entry.value;
+	}
+
+	/**
+	 * Caches the value if there is a room or its key is accessed more frequently than the key of the least recently
+	 * used of the sampled entries, which is evicted then
+	 * @param key - key of the value
+	 * @param value - value
+	 * @param valid - condition checked under the lock of the cache, the value isn't cached unless it's met
+	 */
+	synchronized void put(K key, V value, BooleanSupplier valid) {
+		if (!valid.getAsBoolean())
+			return;
+		Entry<K, V> existing = entries.get(key);
+		if (existing != null) {
+			existing.value = value;
+			existing.accessTime = System.nanoTime();
+			return;
+		}
+		if (residents.size() >= capacity) {
+			Entry<K, V> victim = sampleVictim();
+			if (frequency(key) <= frequency(victim.key))
+				return;
+			evict(victim);
+		}
+		Entry<K, V> entry = new Entry<>(key, value, residents.size());
+		residents.add(entry);
+		entries.put(key, entry);
+	}
+
+	/**
+	 * Evicts the value
+	 * @param key - key of the value
+	 */
+	synchronized void remove(K key) {
+		Entry<K, V> entry = entries.get(key);
+		if (entry != null)
+			evict(entry);
+	}
+
+	/**
+	 * Evicts all the values, the frequencies of the keys are kept
+	 */
+	synchronized void clear() {
+		entries.clear();
+		residents.clear();
+	}
+
+	/**
+	 *
+	 * @return number of the cached values
+	 */
+	int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Picks the least recently used of the sampled entries, all the entries are compared if they are few
+	 * @return the candidate for eviction
+	 */
+	private Entry<K, V> sampleVictim() {
+		Entry<K, V> victim = null;
+		int size = residents.size();
+		boolean all = size <= EVICTION_SAMPLES;
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < (all ? size : EVICTION_SAMPLES); i++) {
+			Entry<K, V> entry = residents.get(all ? i : random.nextInt(size));
+			if (victim == null || entry.accessTime - victim.accessTime < 0)
+				victim = entry;
+		}
+		return victim;
+	}
+
+	/**
+	 * Removes the entry, the last resident takes its place in the list
+	 * @param entry - cached entry
+	 */
+	private void evict(Entry<K, V> entry) {
+		entries.remove(entry.key);
+		Entry<K, V> last = residents.remove(residents.size() - 1);
+		if (last != entry) {
+			last.position = entry.position;
+			residents.set(entry.position, last);
+		}
+	}
+
+	private void increment(K key) {
+		int hash = spread(key.hashCode());
+		for (int row = 0; row < sketch.length; row++) {
+			int i = index(hash, row);
+			int shift = (i & 15) << 2;
+			AtomicLongArray counters = sketch[row];
+			long counter;
+			do {
+				counter = counters.get(i >>> 4);
+			} while ((counter >>> shift & MAX_FREQUENCY) < MAX_FREQUENCY
+					&& !counters.compareAndSet(i >>> 4, counter, counter + (1L << shift)));
+		}
+		if (additions.incrementAndGet() >= sampleSize && ageing.compareAndSet(false, true)) {
+			// ageing, the recent accesses outweigh the old ones
+			try {
+				for (AtomicLongArray counters : sketch) {
+					for (int i = 0; i < counters.length(); i++)
+						counters.getAndUpdate(i, c -> c >>> 1 & HALF_MASK);
+				}
+				additions.addAndGet(-sampleSize / 2);
+			} finally {
+				ageing.set(false);
+			}
+		}
+	}
+
+	private int frequency(K key) {
+		int hash = spread(key.hashCode());
+		int frequency = MAX_FREQUENCY;
+		for (int row = 0; row < sketch.length; row++) {
+			int i = index(hash, row);
+			frequency = Math.min(frequency, (int) (sketch[row].get(i >>> 4) >>> ((i & 15) << 2) & MAX_FREQUENCY));
+		}
+		return frequency;
+	}
+
+	private int index(int hash, int row) {
+		int h = hash * SEEDS[row];
+		h ^= h >>> 16;
+		return h & mask;
+	}
+
+	private static int spread(int hash) {
+		int h = hash * 0x9e3779b9;
+		return h ^ (h >>> 15);
+	}
+
+	/**
+	 * Cached value with the time of its last access
+	 */
+	private static final class Entry<K, V> {
+
+		private final K key;
+		private volatile V value;
+		private volatile long accessTime = System.nanoTime();
+		private int position;
+
+		Entry(K key, V value, int position) {
+			this.key = key;
+			this.value = value;
+			this.position = position;
+		}
+
+	}
+
+}
@@ -0,0 +1,54 @@
+package task.store;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Random access to bytes of a stored value, so a codec is able to read parts of the value only
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+interface RecordSource {
+
+	/**
+	 * 
+	 * @return size of the value
+	 */
+	int size();
+
+	/**
+	 * Reads the range of the value
+	 * @param position - position of the range in the value
+	 * @param length - length of the range
+	 * @return buffer holding the range in its remaining bytes
+	 * @throws IOException
+	 */
+	ByteBuffer read(int position, int length) throws IOException;
+
+	/**
+	 * Constructs the source of the value held in memory
+	 * @param buffer - buffer holding the value in its remaining bytes
+	 * @return source of the value
+	 */
+	static RecordSource of(ByteBuffer buffer) {
+		return new RecordSource() {
+
+			@Override
+			public int size() {
+				return buffer.remaining();
+			}
+
+			@Override
+			public ByteBuffer read(int position, int length) throws IOException {
+				if (position < 0 || length < 0 || position + length > buffer.remaining())
+					throw new EOFException("The range exceeds the value");
+				ByteBuffer range = buffer.duplicate();
+				range.position(buffer.position() + position).limit(buffer.position() + position + length);
+				return range;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,122 @@
+package task.store;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Bounded ring of preallocated entries passed from many producers to a single consumer.
+ * A producer claims the next sequence, fills its entry and publishes it, producers don't lock each other.
+ * The consumer takes published entries in the order of their sequences and releases them for the reuse.
+ * 
+ * @author Fedor Trofimov
+ * @param <E> The type of an entry
+ */
+class RingBuffer<E> {
+
+	private final Object[] entries;
+	private final AtomicLongArray published;
+	private final int mask;
+	private final AtomicLong next = new AtomicLong();
+	private volatile long released;
+	private volatile Thread consumer;
+	private volatile boolean consumerWaiting;
+
+	/**
+	 * Constructs the ring
+	 * @param capacity - number of entries, a power of two
+	 * @param factory - factory of the entries
+	 */
+	RingBuffer(int capacity, Supplier<E> factory) {
+		if (Integer.bitCount(capacity) != 1)
+			throw new IllegalArgumentException("The capacity must be a power of two");
+		entries = new Object[capacity];
+		published = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			entries[i] = factory.get();
+			published.set(i, -1);
+		}
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Claims the next sequence, waits while the ring is full
+	 * @return the claimed sequence
+	 */
+	long claim() {
+		long sequence = next.getAndIncrement();
+		while (sequence - released >= entries.length)
+			LockSupport.parkNanos(1000);
+		return sequence;
+	}
+
+	/**
+	 * 
+	 * @param sequence - sequence of the entry
+	 * @return entry of the sequence
+	 */
+	@SuppressWarnings("unchecked")
+	E get(long sequence) {
+		return (E) entries[(int) sequence & mask];
+	}
+
+	/**
+	 * Makes the filled entry available to the consumer
+	 * @param sequence - claimed sequence
+	 */
+	void publish(long sequence) {
+		published.set((int) sequence & mask, sequence);
+		if (consumerWaiting)
+			LockSupport.unpark(consumer);
+	}
+
+	/**
+	 * Takes published entries following the released ones, called by the consumer only
+	 * @param batch - list receiving the entries in the order of their sequences
+	 * @param maxEntries - maximum number of entries to be taken
+	 * @return number of taken entries
+	 */
+	int drain(List<E> batch, int maxEntries) {
+		long sequence = released;
+		int count = 0;
+		while (count < maxEntries && published.get((int) sequence & mask) == sequence) {
+			batch.add(get(sequence));
+			sequence++;
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Frees the taken entries for the reuse, called by the consumer only
+	 * @param count - number of entries
+	 */
+	void release(int count) {
+		released += count;
+	}
+
+	/**
+	 * 
+	 * @return true if all the claimed entries are released
+	 */
+	boolean isDrained() {
+		return released == next.get();
+	}
+
+	/**
+	 * Waits until the following entry is published, called by the consumer only
+	 * @param timeout - maximum time to wait in milliseconds
+	 */
+	void await(long timeout) {
+		consumer = Thread.currentThread();
+		consumerWaiting = true;
+		long sequence = released;
+		if (published.get((int) sequence & mask) != sequence)
+			LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeout));
+		consumerWaiting = false;
+	}
+
+}
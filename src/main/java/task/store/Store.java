@@ -1,27 +1,45 @@
 package task.store;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
 /**
- * Appendable-only object Store persisted data on a disk
+ * Appendable-only object Store persisted data on a disk.
+ * The Store can be shared between threads: modifications are synchronized,
+ * reads use positional reads of the file channels and run concurrently with each other and with appends.
  * 
  * @author Fedor Trofimov
  * @param <T> The type of a value in the Store
@@ -29,19 +47,55 @@ import java.util.stream.Collectors;
 public class Store<T extends Serializable> implements AppendableStore<T> {
 
 	private Map<String, Index> indexMap;
+	private Codec<T> codec;
+	private ClassDictionary classDictionary;
+	private ByteBufferOutputStream valueBuffer = new ByteBufferOutputStream(1 << 12);
+	private ByteBuffer indexBuffer = ByteBuffer.allocateDirect(1 << 8);
+	private ByteBufferOutputStream batchBuffer = new ByteBufferOutputStream(1 << 12);
+	private ByteBufferOutputStream indexBatchBuffer = new ByteBufferOutputStream(1 << 8);
+	private Compressor compressor = new Compressor();
+	private volatile byte[] dictionary;
+	private List<byte[]> dictionarySamples;
 	private FileChannel ifc;
+	private IndexCodec indexCodec;
 	private List<FileChannel> dfcs;
+	private GroupSync groupSync;
+	private AsyncAppender<T> asyncAppender;
+	private ByteBuffer dataWriteBuffer;
+	private ByteBuffer indexWriteBuffer;
+	private ScheduledExecutorService flushScheduler;
+	private long dataEnd;
+	private long segmentSize;
+	private boolean preallocation;
+	private int encodingThreads;
+	private boolean memoryMapping;
+	// mappings of the completed data files by their numbers, null if the file can't be mapped
+	private final List<ByteBuffer> segmentMaps = new CopyOnWriteArrayList<>();
+	private BlockCache blockCache;
+	private ObjectCache<String, T> objectCache;
+	private long indexEnd;
+	private boolean closed;
+	private final ReadWriteLock filesLock = new ReentrantReadWriteLock();
+	private final Object writeBufferLock = new Object();
 
 	private int capacity;
 	private int size;
 	private float loadFactor;
+	private Compression compression;
+	private DurabilityPolicy durabilityPolicy;
 	private String directory;
 
 	private final String IFILE_EXT = ".ind";
+	private final String CFILE_EXT = ".cls";
+	private final String DICT_FILE_EXT = ".dic";
 	private final String DFILE_EXT = ".dat";
 	private final String FILE_PREFIX = "store";
 	private final String FILE_COPY_PREFIX = "_copy";
-	private final int DATA_FILE_SIZE_THRESHOLD = 1 << 20; // 1Mb
+	private final int DICTIONARY_SIZE = 1 << 14; // 16Kb
+	private final int DICTIONARY_SAMPLES = 1000;
+	private final int MAX_READ_GAP = 1 << 12; // 4Kb
+	private final int MAX_READ_SIZE = 1 << 20; // 1Mb
+	private final int PREALLOCATION_CHUNK = 1 << 16; // 64Kb
 
 	/**
 	 * Constructs this Store persisted on a disk in the specified FS directory
@@ -58,23 +112,112 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 	 * @param loadFactor - load factor
 	 */
 	public Store(String directory, float loadFactor) {
-		if (loadFactor <= 0)
+		this(directory, loadFactor, new JavaSerializationCodec<T>());
+	}
+
+	/**
+	 * Constructs this Store persisted on a disk in the specified FS directory
+	 * @param directory - directory where placed index and data files of this Store, the directory must be existed
+	 * @param codec - codec converting values to bytes and back
+	 */
+	public Store(String directory, Codec<T> codec) {
+		this(directory, 0.75f, codec);
+	}
+
+	/**
+	 * Constructs this Store persisted on a disk in the specified FS directory
+	 * @param directory - directory where placed index and data files of this Store, the directory must be existed
+	 * @param loadFactor - load factor
+	 * @param codec - codec converting values to bytes and back
+	 */
+	public Store(String directory, float loadFactor, Codec<T> codec) {
+		this(directory, codec, new StoreConfig().setLoadFactor(loadFactor));
+	}
+
+	/**
+	 * Constructs this Store persisted on a disk in the specified FS directory
+	 * @param directory - directory where placed index and data files of this Store, the directory must be existed
+	 * @param config - settings of this Store
+	 */
+	public Store(String directory, StoreConfig config) {
+		this(directory, new JavaSerializationCodec<T>(), config);
+	}
+
+	/**
+	 * Constructs this Store persisted on a disk in the specified FS directory
+	 * @param directory - directory where placed index and data files of this Store, the directory must be existed
+	 * @param codec - codec converting values to bytes and back
+	 * @param config - settings of this Store
+	 */
+	public Store(String directory, Codec<T> codec, StoreConfig config) {
+		if (config.getLoadFactor() <= 0)
 			throw new IllegalArgumentException("The load factor must be positive");
+		if (codec == null)
+			throw new IllegalArgumentException("The codec must be specified");
+		if (config.getCompression() == null)
+			throw new IllegalArgumentException("The compression must be specified");
+		if (config.getDurabilityPolicy() == null)
+			throw new IllegalArgumentException("The durability policy must be specified");
+		if (config.getSegmentSize() <= 0)
+			throw new IllegalArgumentException("The segment size must be positive");
+		if (config.getEncodingThreads() < 0)
+			throw new IllegalArgumentException("The number of encoding threads must not be negative");
+		if (config.getWriteBufferSize() < 0 || config.getWriteBufferSize() > 0 && config.getWriteBufferDelay() <= 0)
+			throw new IllegalArgumentException("The write buffer size must not be negative and its delay must be positive");
+		if (config.getBlockCacheSize() < 0)
+			throw new IllegalArgumentException("The block cache size must not be negative");
+		if (config.getObjectCacheSize() < 0)
+			throw new IllegalArgumentException("The object cache size must not be negative");
+		if (config.isMemoryMapping() && System.getProperty("os.name").startsWith("Windows"))
+			throw new IllegalArgumentException("The memory mapping isn't supported on Windows");
+		boolean javaSerialization = codec instanceof JavaSerializationCodec;
+		if (config.isClassDictionary() && !javaSerialization)
+			throw new IllegalArgumentException("The class dictionary is applicable to the Java serialization codec only");
 		this.directory = directory;
-		this.loadFactor = loadFactor;
-		indexMap = new HashMap<>();
+		this.loadFactor = config.getLoadFactor();
+		this.compression = config.getCompression();
+		this.durabilityPolicy = config.getDurabilityPolicy();
+		this.segmentSize = config.getSegmentSize();
+		this.preallocation = config.isPreallocation();
+		this.encodingThreads = config.getEncodingThreads();
+		this.memoryMapping = config.isMemoryMapping();
+		if (config.getBlockCacheSize() > 0)
+			blockCache = new BlockCache(config.getBlockCacheSize());
+		if (config.getObjectCacheSize() > 0)
+			objectCache = new ObjectCache<>(config.getObjectCacheSize());
+		this.codec = codec;
+		indexMap = new ConcurrentHashMap<>();
 		try {
+			String classDictionaryFileName = constructClassDictionaryFileName();
+			if (javaSerialization && (config.isClassDictionary() || Files.exists(Paths.get(classDictionaryFileName)))) {
+				classDictionary = new ClassDictionary(classDictionaryFileName,
+						config.getDurabilityPolicy().getMode() != DurabilityPolicy.Mode.NONE);
+				this.codec = new JavaSerializationCodec<T>(classDictionary);
+			}
 			ifc = createIndexFile("");
 			collectDataFiles();
-			if (Files.exists(Paths.get(constructIndexFileName("")))) {
-				loadStore();
-			} else {
-				capacity = 0;
-				size = 0;
-			}
+			int version = IndexFormat.version(ifc);
+			if (version != IndexFormat.VERSION)
+				migrateIndexFile(version);
+			loadStore();
+			loadDictionary();
+			locateFileEnds();
+			mapDataFiles();
 		} catch (IOException | ClassNotFoundException exc) {
 			throw new RuntimeException("An error has occurred during data restore", exc);
 		}
+		groupSync = new GroupSync(config.getDurabilityPolicy());
+		if (config.getWriteBufferSize() > 0) {
+			dataWriteBuffer = ByteBuffer.allocateDirect(config.getWriteBufferSize());
+			indexWriteBuffer = ByteBuffer.allocateDirect(config.getWriteBufferSize());
+			flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "store-flush");
+				thread.setDaemon(true);
+				return thread;
+			});
+			long delay = config.getWriteBufferDelay();
+			flushScheduler.scheduleWithFixedDelay(this::flushBuffered, delay, delay, TimeUnit.MILLISECONDS);
+		}
 	}
 
 	/**
@@ -83,14 +226,39 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 	 * @param key - key with which the specified value is to be associated
 	 * @param value - value to be associated with the specified key
 	 */
-	public void append(String key, T value) {
+	public synchronized void append(String key, T value) {
+
+		if (indexMap.containsKey(key))
+			throw new IllegalArgumentException("Object with the specified key has already existed");
+
+		ByteBuffer data;
+		try {
+			valueBuffer.reset();
+			codec.encode(value, valueBuffer);
+			data = valueBuffer.buffer();
+			data.flip();
+		} catch (IOException exc) {
+			throw new RuntimeException(exc);
+		}
+		appendEncoded(key, data);
+	}
+
+	/**
+	 * Puts the value already encoded by the codec into this Store with the associated key.
+	 * 
+	 * @param key - key with which the specified value is to be associated
+	 * @param data - buffer holding the encoded value in its remaining bytes
+	 */
+	synchronized void appendEncoded(String key, ByteBuffer data) {
 
 		if (indexMap.containsKey(key))
 			throw new IllegalArgumentException("Object with the specified key has already existed");
 
 		Index index = null;
 		try {
-			index = appendOnDisk(key, value, ifc, dfcs, false);
+			if (dictionarySamples != null)
+				collectDictionarySample(data);
+			index = appendOnDisk(key, data, ifc, indexCodec, dfcs, false);
 		} catch (IOException exc) {
 			throw new RuntimeException(exc);
 		}
@@ -99,26 +267,307 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 		indexMap.put(key, index);
 		capacity++;
 		size++;
+		commit();
+	}
+
+	/**
+	 * Puts all the values into this Store with their associated keys.
+	 * 
+	 * @param values - values to be associated with their keys
+	 * @see #appendBatch(List)
+	 */
+	public void appendAll(Map<String, T> values) {
+		appendBatch(new ArrayList<>(values.entrySet()));
+	}
+
+	/**
+	 * Puts the values into this Store with their associated keys in the order of the list.
+	 * The values are encoded into one buffer and written with a single write per data file, the indexes are written with a single write.
+	 * None of the values is appended if any of the keys has already existed or any of the values can't be encoded.
+	 * 
+	 * @param entries - keys and values to be associated with them
+	 */
+	public synchronized void appendBatch(List<? extends Map.Entry<String, T>> entries) {
+		appendBatch(entries, false);
+	}
+
+	/**
+	 * Puts the values already encoded by the codec into this Store with their associated keys in the order of the list.
+	 * 
+	 * @param entries - keys and encoded values to be associated with them
+	 * @see #appendBatch(List)
+	 */
+	synchronized void appendEncodedBatch(List<? extends Map.Entry<String, byte[]>> entries) {
+		appendBatch(entries, true);
+	}
+
+	/**
+	 * Puts the values into this Store with their associated keys in the order of the list
+	 * @param entries - keys and values to be associated with them
+	 * @param encoded - true if the values are byte arrays encoded by the codec
+	 */
+	@SuppressWarnings("unchecked")
+	private void appendBatch(List<? extends Map.Entry<String, ?>> entries, boolean encoded) {
+		// the keys are validated before anything is encoded or written
+		Set<String> keys = new HashSet<>();
+		for (Map.Entry<String, ?> entry : entries) {
+			if (indexMap.containsKey(entry.getKey()) || !keys.add(entry.getKey()))
+				throw new RejectedKeyException("Object with the specified key has already existed");
+			try {
+				IndexFormat.keyLength(entry.getKey());
+			} catch (IllegalArgumentException exc) {
+				throw new RejectedKeyException(exc.getMessage());
+			}
+		}
+		if (entries.isEmpty())
+			return;
+
+		List<Index> indexes;
+		try {
+			int[] dataSizes = new int[entries.size()];
+			Compression[] dataCompressions = new Compression[entries.size()];
+			batchBuffer.reset();
+			for (int i = 0; i < entries.size(); i++) {
+				int start = batchBuffer.size();
+				if (encoded)
+					batchBuffer.write((byte[]) entries.get(i).getValue());
+				else
+					codec.encode((T) entries.get(i).getValue(), batchBuffer);
+				ByteBuffer data = batchBuffer.buffer().duplicate();
+				data.flip();
+				data.position(start);
+				if (dictionarySamples != null)
+					collectDictionarySample(data);
+				dataCompressions[i] = Compression.NONE;
+				if (compression != Compression.NONE) {
+					Compression valueCompression = valueCompression();
+					ByteBuffer compressed = compressor.compress(valueCompression, data);
+					if (compressed != null) {
+						// replace the value by the compressed one
+						batchBuffer.truncate(start);
+						batchBuffer.write(compressed);
+						dataCompressions[i] = valueCompression;
+					}
+				}
+				dataSizes[i] = batchBuffer.size() - start;
+			}
+			indexes = appendBatchOnDisk(entries, dataSizes, dataCompressions);
+		} catch (IOException exc) {
+			throw new RuntimeException(exc);
+		}
+
+		// write into a memory
+		for (Index index : indexes)
+			indexMap.put(index.getKey(), index);
+		capacity += indexes.size();
+		size += indexes.size();
+		commit();
+	}
+
+	/**
+	 * Puts the value into this Store with the associated key asynchronously.
+	 * The value is appended by the writer thread together with other values passed so far,
+	 * the caller is blocked only while the ring buffer of the writer is full.
+	 * The value is encoded by one of the encoding threads if they are configured, otherwise by the writer thread.
+	 * 
+	 * @param key - key with which the specified value is to be associated
+	 * @param value - value to be associated with the specified key, it must not be modified until the future is completed
+	 * @return future completed when the value is written, and flushed if the durability policy is every append,
+	 * or completed exceptionally if the key has already existed or the value can't be written
+	 */
+	public CompletableFuture<Void> appendAsync(String key, T value) {
+		AsyncAppender<T> appender;
+		synchronized (this) {
+			if (asyncAppender == null)
+				asyncAppender = new AsyncAppender<>(this, codec, encodingThreads);
+			appender = asyncAppender;
+		}
+		return appender.append(key, value);
 	}
 
 	/**
 	 * Returns the value to which the specified key is mapped, or null if this Store contains no value for the key.
+	 * The method is safe for concurrent use: the readers don't block each other and the appends,
+	 * only the relocation of the files blocks them. If the object cache is enabled, the cached instance of the value may be returned.
 	 * 
 	 * @param key - key whose associated value is to be returned
 	 * @return value to which the specified key is associated, or null if this Store contains no mapping for the key
 	 */
 	public T get(String key) {
-		Index index = indexMap.get(key);
-		if (index == null)
-			return null;
-		byte[] byteArray = new byte[(int) index.getDataSize()];
-		FileChannel dfc = dfcs.get(index.getFileNumber());
+		filesLock.readLock().lock();
 		try {
-			dfc.position(index.getDataOffset());
-			dfc.read(ByteBuffer.wrap(byteArray));
-			return (T) deserialize(byteArray);
+			if (objectCache != null) {
+				T value = objectCache.get(key);
+				if (value != null)
+					return value;
+			}
+			Index index = indexMap.get(key);
+			if (index == null)
+				return null;
+			T value = codec.decode(readValue(index));
+			if (objectCache != null)
+				objectCache.put(key, value, () -> indexMap.get(key) == index);
+			return value;
 		} catch (IOException | ClassNotFoundException exc) {
 			throw new RuntimeException(exc);
+		} finally {
+			filesLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the values to which the specified keys are mapped. The values are read in the order of their positions
+	 * in the data files, the values placed close to each other are read at once.
+	 * 
+	 * @param keys - keys whose associated values are to be returned
+	 * @return map of the keys to their values, the keys this Store contains no mapping for are absent
+	 */
+	public Map<String, T> getAll(Collection<String> keys) {
+		filesLock.readLock().lock();
+		try {
+			Map<String, T> values = new HashMap<>();
+			List<Index> indexes = new ArrayList<>(keys.size());
+			for (String key : keys) {
+				T value = objectCache != null ? objectCache.get(key) : null;
+				if (value != null) {
+					values.put(key, value);
+					continue;
+				}
+				Index index = indexMap.get(key);
+				if (index != null)
+					indexes.add(index);
+			}
+			indexes.sort(Comparator.comparingInt(Index::getFileNumber).thenComparingLong(Index::getDataOffset));
+
+			int start = 0;
+			while (start < indexes.size()) {
+				// merge the following values of the same file while the gaps between them are small
+				Index first = indexes.get(start);
+				long runStart = first.getDataOffset();
+				long runEnd = runStart + first.getDataSize();
+				int end = start + 1;
+				for (; end < indexes.size(); end++) {
+					Index next = indexes.get(end);
+					long nextEnd = Math.max(runEnd, next.getDataOffset() + next.getDataSize());
+					if (next.getFileNumber() != first.getFileNumber() || next.getDataOffset() - runEnd > MAX_READ_GAP
+							|| nextEnd - runStart > MAX_READ_SIZE)
+						break;
+					runEnd = nextEnd;
+				}
+				ByteBuffer run = ByteBuffer.allocate((int) (runEnd - runStart));
+				readData(first.getFileNumber(), runStart, run);
+				for (int i = start; i < end; i++) {
+					Index index = indexes.get(i);
+					ByteBuffer data = run.duplicate();
+					data.limit((int) (index.getDataOffset() - runStart) + index.getDataSize());
+					data.position((int) (index.getDataOffset() - runStart));
+					String key = index.getKey();
+					T value = codec.decode(Compressor.decompress(index.getCompression(), data.slice(), dictionary));
+					if (objectCache != null)
+						objectCache.put(key, value, () -> indexMap.get(key) == index);
+					values.put(key, value);
+				}
+				start = end;
+			}
+			return values;
+		} catch (IOException | ClassNotFoundException exc) {
+			throw new RuntimeException(exc);
+		} finally {
+			filesLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the projected fields of the value to which the specified key is mapped.
+	 * Only the table of field offsets and the projected fields are read from an uncompressed value.
+	 * 
+	 * @param key - key whose associated value is to be read
+	 * @param projection - fields to be read
+	 * @return values of the projected fields by their names, or null if this Store contains no mapping for the key
+	 * @throws UnsupportedOperationException if the codec of this Store isn't the FieldTableCodec
+	 */
+	public Map<String, Object> get(String key, FieldProjection projection) {
+		if (!(codec instanceof FieldTableCodec))
+			throw new UnsupportedOperationException("The projection requires the FieldTableCodec");
+		filesLock.readLock().lock();
+		try {
+			Index index = indexMap.get(key);
+			if (index == null)
+				return null;
+			RecordSource source = index.getCompression() == Compression.NONE ? new DataSource(index) : RecordSource.of(readValue(index));
+			return ((FieldTableCodec<T>) codec).decode(source, projection);
+		} catch (IOException | ClassNotFoundException exc) {
+			throw new RuntimeException(exc);
+		} finally {
+			filesLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns bytes of the value to which the specified key is mapped as they are encoded by the codec, the value isn't decoded.
+	 * 
+	 * @param key - key whose associated value is to be returned
+	 * @return read-only buffer holding the encoded value in its remaining bytes, or null if this Store contains no mapping for the key
+	 */
+	public ByteBuffer getRaw(String key) {
+		ByteBuffer value = readEncoded(key);
+		return value == null ? null : value.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns bytes of the value to which the specified key is mapped as they are encoded by the codec.
+	 * 
+	 * @param key - key whose associated value is to be returned
+	 * @return buffer holding the encoded value in its remaining bytes, or null if this Store contains no mapping for the key.
+	 * The buffer of a value of a memory mapped data file is a read-only slice of the mapping, not backed by an array
+	 */
+	ByteBuffer readEncoded(String key) {
+		filesLock.readLock().lock();
+		try {
+			Index index = indexMap.get(key);
+			if (index == null)
+				return null;
+			return readValue(index);
+		} catch (IOException exc) {
+			throw new RuntimeException(exc);
+		} finally {
+			filesLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Transfers bytes of the value to which the specified key is mapped as they are encoded by the codec into the buffer.
+	 * An uncompressed value is read from the data file directly into the buffer.
+	 * 
+	 * @param key - key whose associated value is to be read
+	 * @param dst - buffer receiving the encoded value starting at its position, the position is advanced by the size of the value
+	 * @return size of the value, or -1 if this Store contains no mapping for the key
+	 * @throws BufferOverflowException if there is insufficient space in the buffer, the buffer is left unchanged
+	 */
+	public int readInto(String key, ByteBuffer dst) {
+		filesLock.readLock().lock();
+		try {
+			Index index = indexMap.get(key);
+			if (index == null)
+				return -1;
+			if (index.getCompression() != Compression.NONE) {
+				ByteBuffer value = readValue(index);
+				int size = value.remaining();
+				dst.put(value);
+				return size;
+			}
+			int size = index.getDataSize();
+			if (dst.remaining() < size)
+				throw new BufferOverflowException();
+			ByteBuffer target = dst.duplicate();
+			target.limit(target.position() + size);
+			readData(index, target);
+			dst.position(target.position());
+			return size;
+		} catch (IOException exc) {
+			throw new RuntimeException(exc);
+		} finally {
+			filesLock.readLock().unlock();
 		}
 	}
 
@@ -128,20 +577,22 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 	 * @param key - key whose value is to be removed from the Store
 	 * @return true if the value associated with the key exists, false if there was no value for the key
 	 */
-	public boolean remove(String key) {
+	public synchronized boolean remove(String key) {
 		// remove from a memory
 		Index index = indexMap.remove(key);
 		if (index == null)
 			return false;
 		size--;
+		// the readers don't cache the value once the key is removed from the index map
+		if (objectCache != null)
+			objectCache.remove(key);
 
 		// mark as removed on a disk
 		try {
 			index.setDeleted(true);
-			byte[] byteArray = serialize(index);
-			ifc.position(index.getIndexOffset() + 4);
-			ifc.write(ByteBuffer.wrap(byteArray));
+			writeFlags(index);
 		} catch (IOException exc) {
+			index.setDeleted(false);
 			indexMap.put(key, index);
 			size++;
 			throw new RuntimeException(exc);
@@ -150,6 +601,7 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 		float ratio = (float) size / capacity;
 		if (ratio < loadFactor)
 			relocate();
+		commit();
 		return true;
 	}
 
@@ -166,24 +618,120 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 	 * Closes file channels resources
 	 */
 	public void close() {
+		AsyncAppender<T> appender;
+		synchronized (this) {
+			appender = asyncAppender;
+		}
+		// the writer thread appends the queued values before the Store is closed
+		if (appender != null)
+			appender.close();
+		synchronized (this) {
+			filesLock.writeLock().lock();
+			try {
+				closeFiles();
+			} finally {
+				filesLock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Closes file channels resources
+	 */
+	private void closeFiles() {
+		if (flushScheduler != null)
+			flushScheduler.shutdown();
+		closed = true;
+		segmentMaps.clear();
+		if (blockCache != null)
+			blockCache.clear();
+		if (objectCache != null)
+			objectCache.clear();
 		try {
+			flushWrites();
+			trimDataFile();
+			groupSync.close();
 			ifc.close();
 			for (FileChannel channel : dfcs)
 				channel.close();
+			if (classDictionary != null)
+				classDictionary.close();
+			compressor.end();
 		} catch (IOException exc) {
 			throw new RuntimeException(exc);
 		}
 	}
 
+	/**
+	 * Locates ends of the index file and the last data file, the following appends are placed at them.
+	 * The end of the last data file is the end of its last indexed value, as the file may be preallocated.
+	 * @throws IOException
+	 */
+	private void locateFileEnds() throws IOException {
+		indexEnd = ifc.size();
+		int lastFileNumber = dfcs.size() - 1;
+		dataEnd = 0;
+		for (Index index : indexMap.values()) {
+			if (index.getFileNumber() == lastFileNumber)
+				dataEnd = Math.max(dataEnd, index.getDataOffset() + index.getDataSize());
+		}
+		if (preallocation)
+			preallocate(dfcs.get(lastFileNumber));
+	}
+
+	/**
+	 * Fills the data file with zeros up to the segment size, so the blocks of the file are allocated at once
+	 * and appends don't change the size of the file. Extending the file by its last byte only would leave it sparse.
+	 * @param dfc - file channel of the data file
+	 * @throws IOException if the file can't be filled, e.g. the device has no space left
+	 */
+	private void preallocate(FileChannel dfc) throws IOException {
+		long position = dfc.size();
+		if (position >= segmentSize)
+			return;
+		ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(PREALLOCATION_CHUNK, segmentSize - position));
+		while (position < segmentSize) {
+			zeros.clear();
+			zeros.limit((int) Math.min(zeros.capacity(), segmentSize - position));
+			int length = zeros.remaining();
+			writeFully(dfc, zeros, position);
+			position += length;
+		}
+	}
+
+	/**
+	 * Cuts off the preallocated space and bytes not referred by any index from the end of the last data file
+	 * @throws IOException
+	 */
+	private void trimDataFile() throws IOException {
+		FileChannel dfc = dfcs.get(dfcs.size() - 1);
+		if (dfc.size() > dataEnd)
+			dfc.truncate(dataEnd);
+	}
+
+	/**
+	 * Flushes the write buffers on expiry of their delay, a failure is reported by the following write
+	 */
+	private synchronized void flushBuffered() {
+		if (closed)
+			return;
+		try {
+			flushWrites();
+		} catch (IOException exc) {
+			// the bytes are kept in the buffers
+		}
+	}
+
 	/**
 	 * Reload this Store from index and data files persisted on a disk
 	 * 
 	 * @throws IOException
-	 * @throws ClassNotFoundException
 	 */
-	private void loadStore() throws IOException, ClassNotFoundException {
-		while (ifc.position() < ifc.size()) {
-			Index index = readIndexFromDisk();
+	private void loadStore() throws IOException {
+		indexCodec = new IndexCodec();
+		IndexReader reader = new IndexReader(ifc, IndexFormat.HEADER_SIZE, indexCodec);
+		while (reader.hasNext()) {
+			Index index = reader.next();
 
 			if (!index.isDeleted()) {
 				indexMap.put(index.getKey(), index);
@@ -193,49 +741,575 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 		}
 	}
 
+	/**
+	 * Loads the dictionary of the DICTIONARY compression, the dictionary is trained if the Store has enough values for sampling
+	 * @throws IOException
+	 */
+	private void loadDictionary() throws IOException {
+		Path path = Paths.get(constructDictionaryFileName(""));
+		if (Files.exists(path)) {
+			dictionary = Files.readAllBytes(path);
+			compressor.setDictionary(dictionary);
+		} else if (compression == Compression.DICTIONARY) {
+			dictionarySamples = sampleValues(DICTIONARY_SAMPLES);
+			if (dictionarySamples.size() >= DICTIONARY_SAMPLES)
+				trainDictionary("");
+		}
+	}
+
+	/**
+	 * Keeps the copy of the appended value until enough samples are collected to train the dictionary
+	 * @param data - buffer holding the encoded value in its remaining bytes
+	 * @throws IOException
+	 */
+	private void collectDictionarySample(ByteBuffer data) throws IOException {
+		byte[] sample = new byte[data.remaining()];
+		data.duplicate().get(sample);
+		dictionarySamples.add(sample);
+		if (dictionarySamples.size() >= DICTIONARY_SAMPLES)
+			trainDictionary("");
+	}
+
+	/**
+	 * Trains the dictionary on the collected samples, persists it and sets it to the compressor
+	 * @param suffix - suffix of the dictionary file name
+	 * @throws IOException
+	 */
+	private void trainDictionary(String suffix) throws IOException {
+		byte[] trained = DictionaryTrainer.train(dictionarySamples, DICTIONARY_SIZE);
+		Path path = Paths.get(constructDictionaryFileName(suffix));
+		Files.write(path, trained);
+		// the values compressed with the dictionary must not become durable before it
+		if (durabilityPolicy.getMode() != DurabilityPolicy.Mode.NONE) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+				channel.force(true);
+			}
+		}
+		dictionarySamples = null;
+		compressor.setDictionary(trained);
+		if (suffix.isEmpty())
+			dictionary = trained;
+	}
+
+	/**
+	 * Reads randomly chosen values of this Store
+	 * @param count - number of values to be read
+	 * @return encoded values, all of them if this Store has fewer values
+	 * @throws IOException
+	 */
+	private List<byte[]> sampleValues(int count) throws IOException {
+		// reservoir sampling
+		List<Index> indexes = new ArrayList<>(count);
+		Random random = new Random();
+		int seen = 0;
+		for (Index index : indexMap.values()) {
+			if (indexes.size() < count) {
+				indexes.add(index);
+			} else {
+				int i = random.nextInt(seen + 1);
+				if (i < count)
+					indexes.set(i, index);
+			}
+			seen++;
+		}
+		List<byte[]> samples = new ArrayList<>(indexes.size());
+		for (Index index : indexes) {
+			ByteBuffer value = readValue(index);
+			byte[] sample = new byte[value.remaining()];
+			value.get(sample);
+			samples.add(sample);
+		}
+		return samples;
+	}
+
 	/**
 	 * 
 	 * @param key - key with which the specified value is to be associated
-	 * @param value - value to be associated with the specified key
+	 * @param value - buffer holding the encoded value in its remaining bytes
 	 * @param indexChannel - file channel of an index file
+	 * @param indexCodec - codec of the index file positioned at its end
 	 * @param dataChannels - file channels list of data files
 	 * @param relocation - flag indicates the phase in which the value is appended
 	 * @return the index constructed for the specified value
 	 * @throws IOException
 	 */
-	private Index appendOnDisk(String key, T value, FileChannel indexChannel,
-			List<FileChannel> dataChannels, boolean relocation)
+	private Index appendOnDisk(String key, ByteBuffer value, FileChannel indexChannel,
+			IndexCodec indexCodec, List<FileChannel> dataChannels, boolean relocation)
 			throws IOException {
+		int keyLength = IndexFormat.keyLength(key);
+
 		// persist data on a disk
 		int lastFileNumber = dataChannels.size() - 1;
-		byte[] byteArray = serialize(value);
+		ByteBuffer data = value;
+		Compression dataCompression = Compression.NONE;
+		if (compression != Compression.NONE) {
+			Compression valueCompression = valueCompression();
+			ByteBuffer compressed = compressor.compress(valueCompression, data);
+			if (compressed != null) {
+				data = compressed;
+				dataCompression = valueCompression;
+			}
+		}
+		int dataSize = data.remaining();
 		FileChannel dfc = dataChannels.get(lastFileNumber); // write to last file
-		long dataOffset = dfc.size();
-		dfc.position(dataOffset);
-		dfc.write(ByteBuffer.wrap(byteArray));
-		int dataSize = (int) (dfc.size() - dataOffset);
+		// ends of the files of this Store are tracked in a memory
+		long dataOffset = relocation ? dfc.size() : dataEnd;
+		long indexOffset = relocation ? indexChannel.size() : indexEnd;
 
-		// persist index on a disk
-		long indexOffset = indexChannel.size();
 		Index index = new Index(false, lastFileNumber, dataOffset, dataSize,
-				indexOffset, key);
-		byteArray = serialize(index);
-		indexChannel.position(indexOffset + 4);
-		indexChannel.write(ByteBuffer.wrap(byteArray));
-		int indexSize = (int) (indexChannel.size() - indexOffset - 4);
-		ByteBuffer byteBuffer = ByteBuffer.allocate(4).putInt(indexSize);
-		byteBuffer.rewind();
-		indexChannel.write(byteBuffer, indexOffset);
+				indexOffset, key, dataCompression);
+		int maxIndexSize = indexCodec.maxRecordSize(keyLength);
+		if (indexBuffer.capacity() < maxIndexSize)
+			indexBuffer = ByteBuffer.allocateDirect(maxIndexSize);
+		indexBuffer.clear();
+		indexCodec.mark();
+		indexCodec.write(index, keyLength, indexBuffer);
+		indexBuffer.flip();
+		int indexSize = indexBuffer.remaining();
 
-		// create a new data file on reaching threshold for the last data file
-		if (dataChannels.get(lastFileNumber).size() > DATA_FILE_SIZE_THRESHOLD) {
-			createNextDataFile(dataChannels, relocation ? FILE_COPY_PREFIX : "");
+		if (relocation) {
+			// persist data and index on a disk
+			writeFully(dfc, data, dataOffset);
+			writeFully(indexChannel, indexBuffer, indexOffset);
+			if (dfc.size() > segmentSize)
+				createNextDataFile(dataChannels, FILE_COPY_PREFIX);
+			return index;
 		}
+
+		try {
+			synchronized (writeBufferLock) {
+				if (dataWriteBuffer == null || !bufferWrites(data, indexBuffer)) {
+					// persist data and index on a disk
+					writeFully(dfc, data, dataOffset);
+					groupSync.written(dfc, dataSize);
+					writeFully(indexChannel, indexBuffer, indexOffset);
+					groupSync.indexWritten(indexChannel, indexSize);
+				}
+				dataEnd += dataSize;
+				indexEnd += indexSize;
+			}
+		} catch (IOException exc) {
+			// the record hasn't reached the index file, the following one is encoded as if it weren't written
+			indexCodec.reset();
+			discardIndexTail(indexChannel, indexOffset);
+			throw exc;
+		}
+
+		// create a new data file on reaching threshold for the last data file
+		if (dataEnd > segmentSize)
+			rollDataFile();
 		return index;
 	}
 
 	/**
-	 * Reads the index from the index file
+	 * Cuts off the part of the failed index record, the next record is written at its offset.
+	 * The failure is ignored, the index file can't be written then anyway.
+	 * @param indexChannel - file channel of the index file
+	 * @param indexOffset - offset of the failed record
+	 */
+	private static void discardIndexTail(FileChannel indexChannel, long indexOffset) {
+		try {
+			if (indexChannel.size() > indexOffset)
+				indexChannel.truncate(indexOffset);
+		} catch (IOException exc) {
+		}
+	}
+
+	/**
+	 * Writes the remaining bytes of the buffer at the position of the file without moving the position of the channel
+	 * @param channel - file channel
+	 * @param src - buffer holding the bytes
+	 * @param position - position in the file
+	 * @throws IOException
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer src, long position) throws IOException {
+		while (src.hasRemaining())
+			position += channel.write(src, position);
+	}
+
+	/**
+	 * Rewrites the flags of the index in the index file or in the write buffer if the index isn't flushed yet
+	 * @param index - index whose flags are changed
+	 * @throws IOException
+	 */
+	private void writeFlags(Index index) throws IOException {
+		byte flags = IndexFormat.flags(index);
+		if (indexWriteBuffer != null) {
+			long bufferStart = indexEnd - indexWriteBuffer.position();
+			if (index.getIndexOffset() >= bufferStart) {
+				indexWriteBuffer.put((int) (index.getIndexOffset() - bufferStart), flags);
+				return;
+			}
+		}
+		ifc.write(ByteBuffer.wrap(new byte[] { flags }), index.getIndexOffset());
+		groupSync.indexWritten(ifc, 1);
+	}
+
+	/**
+	 * Puts the value and its index into the write buffers, the buffers are flushed if they have no space left
+	 * @param data - buffer holding the stored value
+	 * @param index - buffer holding the index record
+	 * @return true if the value and index are buffered, false if they must be written directly as they exceed the buffers
+	 * @throws IOException
+	 */
+	private boolean bufferWrites(ByteBuffer data, ByteBuffer index) throws IOException {
+		if (dataWriteBuffer.remaining() < data.remaining() || indexWriteBuffer.remaining() < index.remaining())
+			flushWrites();
+		if (dataWriteBuffer.remaining() < data.remaining() || indexWriteBuffer.remaining() < index.remaining())
+			return false;
+		dataWriteBuffer.put(data);
+		indexWriteBuffer.put(index);
+		return true;
+	}
+
+	/**
+	 * Writes the buffered values and indexes into the last data file and the index file, the values are written first
+	 * @throws IOException
+	 */
+	private void flushWrites() throws IOException {
+		if (dataWriteBuffer == null)
+			return;
+		flushWriteBuffer(dataWriteBuffer, dfcs.get(dfcs.size() - 1), dataEnd, false);
+		flushWriteBuffer(indexWriteBuffer, ifc, indexEnd, true);
+	}
+
+	/**
+	 * Writes the buffered bytes to the end of the file and clears the buffer
+	 * @param buffer - write buffer
+	 * @param channel - file channel of the file
+	 * @param end - end of the file including the buffered bytes
+	 * @param index - true if the file is the index file
+	 * @throws IOException
+	 */
+	private void flushWriteBuffer(ByteBuffer buffer, FileChannel channel, long end, boolean index) throws IOException {
+		if (buffer.position() == 0)
+			return;
+		ByteBuffer pending = buffer.duplicate();
+		pending.flip();
+		int size = pending.remaining();
+		writeFully(channel, pending, end - size);
+		// the channel is registered once the bytes are written, a concurrent flush of the group sync can't miss them
+		if (index)
+			groupSync.indexWritten(channel, size);
+		else
+			groupSync.written(channel, size);
+		synchronized (writeBufferLock) {
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Creates the next data file, the buffered values are flushed into the previous one
+	 * @throws IOException
+	 */
+	private void rollDataFile() throws IOException {
+		if (dataWriteBuffer != null)
+			flushWriteBuffer(dataWriteBuffer, dfcs.get(dfcs.size() - 1), dataEnd, false);
+		trimDataFile();
+		if (memoryMapping)
+			segmentMaps.add(mapDataFile(dfcs.get(dfcs.size() - 1)));
+		synchronized (writeBufferLock) {
+			createNextDataFile(dfcs, "");
+			dataEnd = 0;
+		}
+		if (preallocation)
+			preallocate(dfcs.get(dfcs.size() - 1));
+	}
+
+	/**
+	 * Writes the values encoded into the batch buffer into the last data files and their indexes into the index file
+	 * @param entries - keys of the values
+	 * @param dataSizes - sizes of the values as they are stored
+	 * @param dataCompressions - compressions of the values
+	 * @return the indexes constructed for the values
+	 * @throws IOException
+	 */
+	private List<Index> appendBatchOnDisk(List<? extends Map.Entry<String, ?>> entries, int[] dataSizes,
+			Compression[] dataCompressions) throws IOException {
+		ByteBuffer data = batchBuffer.buffer().duplicate();
+		data.flip();
+		List<Index> indexes = new ArrayList<>(entries.size());
+		flushWrites();
+		indexBatchBuffer.reset();
+		indexCodec.mark();
+		try {
+			return writeBatch(entries, dataSizes, dataCompressions, data, indexes);
+		} catch (IOException exc) {
+			// the records haven't reached the index file, the values written are left unindexed
+			indexCodec.reset();
+			discardIndexTail(ifc, indexEnd);
+			throw exc;
+		}
+	}
+
+	/**
+	 * Writes the values and their indexes, the state of the index codec is moved forward by the records
+	 * @param entries - keys of the values
+	 * @param dataSizes - sizes of the values as they are stored
+	 * @param dataCompressions - compressions of the values
+	 * @param data - buffer holding the values
+	 * @param indexes - list receiving the indexes constructed for the values
+	 * @return the indexes constructed for the values
+	 * @throws IOException
+	 */
+	private List<Index> writeBatch(List<? extends Map.Entry<String, ?>> entries, int[] dataSizes,
+			Compression[] dataCompressions, ByteBuffer data, List<Index> indexes) throws IOException {
+		long indexOffset = indexEnd;
+		int lastFileNumber = dfcs.size() - 1;
+		long dataOffset = dataEnd;
+		int segmentStart = 0;
+		int segmentEnd = 0;
+		for (int i = 0; i < entries.size(); i++) {
+			String key = entries.get(i).getKey();
+			int keyLength = IndexFormat.keyLength(key);
+			Index index = new Index(false, lastFileNumber, dataOffset, dataSizes[i],
+					indexOffset + indexBatchBuffer.size(), key, dataCompressions[i]);
+			indexBatchBuffer.ensureCapacity(indexCodec.maxRecordSize(keyLength));
+			indexCodec.write(index, keyLength, indexBatchBuffer.buffer());
+			indexes.add(index);
+			dataOffset += dataSizes[i];
+			segmentEnd += dataSizes[i];
+
+			// create a new data file on reaching threshold for the last data file
+			if (dataOffset > segmentSize) {
+				writeData(data, segmentStart, segmentEnd);
+				rollDataFile();
+				lastFileNumber++;
+				dataOffset = 0;
+				segmentStart = segmentEnd;
+			}
+		}
+		if (segmentEnd > segmentStart)
+			writeData(data, segmentStart, segmentEnd);
+
+		// persist indexes on a disk
+		ByteBuffer indexData = indexBatchBuffer.buffer();
+		indexData.flip();
+		int indexSize = indexData.remaining();
+		writeFully(ifc, indexData, indexOffset);
+		groupSync.indexWritten(ifc, indexSize);
+		indexEnd += indexSize;
+		return indexes;
+	}
+
+	/**
+	 * Appends the range of the buffer to the end of the last data file
+	 * @param data - buffer holding the values
+	 * @param start - start position of the range
+	 * @param end - end position of the range
+	 * @throws IOException
+	 */
+	private void writeData(ByteBuffer data, int start, int end) throws IOException {
+		FileChannel dfc = dfcs.get(dfcs.size() - 1);
+		data.limit(end);
+		data.position(start);
+		long position = dataEnd;
+		int size = data.remaining();
+		synchronized (writeBufferLock) {
+			dataEnd += size;
+		}
+		writeFully(dfc, data, position);
+		groupSync.written(dfc, size);
+	}
+
+	/**
+	 * Flushes written files according to the durability policy
+	 */
+	private void commit() {
+		try {
+			if (durabilityPolicy.getMode() == DurabilityPolicy.Mode.EVERY_APPEND)
+				flushWrites();
+			groupSync.commit();
+		} catch (IOException exc) {
+			throw new RuntimeException("Unable to flush the Store files", exc);
+		}
+	}
+
+	/**
+	 * Returns the compression applied to a value being appended
+	 * @return the configured compression, DEFLATE while the dictionary is not trained yet
+	 */
+	private Compression valueCompression() {
+		return compression == Compression.DICTIONARY && compressor.getDictionary() == null
+				? Compression.DEFLATE : compression;
+	}
+
+	/**
+	 * Reads the value from the data file and decompresses it
+	 * @param index - index of the value
+	 * @return buffer holding the encoded value
+	 * @throws IOException
+	 */
+	private ByteBuffer readValue(Index index) throws IOException {
+		ByteBuffer mapped = mappedData(index.getFileNumber(), index.getDataOffset(), index.getDataSize());
+		if (mapped != null)
+			return Compressor.decompress(index.getCompression(), mapped, dictionary);
+		ByteBuffer buffer = ByteBuffer.allocate(index.getDataSize());
+		readData(index, buffer);
+		buffer.flip();
+		return Compressor.decompress(index.getCompression(), buffer, dictionary);
+	}
+
+	/**
+	 * Reads the value as it is stored in the data file
+	 * @param index - index of the value
+	 * @param dst - buffer receiving the stored value, it must have exactly the size of the value remaining
+	 * @throws IOException
+	 */
+	private void readData(Index index, ByteBuffer dst) throws IOException {
+		readData(index.getFileNumber(), index.getDataOffset(), dst);
+	}
+
+	/**
+	 * Reads bytes from the data file
+	 * @param fileNumber - ordinal number of the data file
+	 * @param position - position in the data file
+	 * @param dst - buffer receiving the bytes, it is filled up to its limit
+	 * @throws IOException
+	 */
+	private void readData(int fileNumber, long position, ByteBuffer dst) throws IOException {
+		ByteBuffer target = dst;
+		if (dataWriteBuffer != null) {
+			synchronized (writeBufferLock) {
+				if (fileNumber == dfcs.size() - 1) {
+					// the bytes may be not flushed yet
+					long bufferStart = dataEnd - dataWriteBuffer.position();
+					long end = position + dst.remaining();
+					if (end > bufferStart) {
+						long from = Math.max(position, bufferStart);
+						ByteBuffer pending = dataWriteBuffer.duplicate();
+						pending.limit((int) (end - bufferStart));
+						pending.position((int) (from - bufferStart));
+						ByteBuffer tail = dst.duplicate();
+						tail.position(dst.position() + (int) (from - position));
+						tail.put(pending);
+						if (position >= bufferStart) {
+							dst.position(dst.limit());
+							return;
+						}
+						// the bytes before the buffer are flushed already, they are read from the file out of the lock
+						target = dst.duplicate();
+						target.limit(dst.position() + (int) (bufferStart - position));
+					}
+				}
+			}
+		}
+		readFile(fileNumber, position, target);
+		if (target != dst)
+			dst.position(dst.limit());
+	}
+
+	/**
+	 * Reads bytes of the data file written to the disk
+	 * @param fileNumber - ordinal number of the data file
+	 * @param position - position in the data file
+	 * @param dst - buffer receiving the bytes, it is filled up to its limit
+	 * @throws IOException
+	 */
+	private void readFile(int fileNumber, long position, ByteBuffer dst) throws IOException {
+		ByteBuffer mapped = mappedData(fileNumber, position, dst.remaining());
+		if (mapped != null) {
+			dst.put(mapped);
+			return;
+		}
+		// the position of the channel isn't changed, so concurrent reads don't interfere
+		FileChannel dfc = dfcs.get(fileNumber);
+		if (blockCache != null && fileNumber < dfcs.size() - 1) {
+			// the completed data file doesn't change until the relocation
+			blockCache.read(fileNumber, position, dst, dfc);
+			return;
+		}
+		while (dst.hasRemaining()) {
+			int read = dfc.read(dst, position);
+			if (read < 0)
+				throw new EOFException("The data file " + fileNumber + " is truncated");
+			position += read;
+		}
+	}
+
+	/**
+	 * Returns the bytes of the completed data file from its mapping
+	 * @param fileNumber - ordinal number of the data file
+	 * @param position - position in the data file
+	 * @param size - number of bytes
+	 * @return read-only buffer holding the bytes, or null if the data file isn't mapped
+	 */
+	private ByteBuffer mappedData(int fileNumber, long position, int size) {
+		if (fileNumber >= segmentMaps.size())
+			return null;
+		ByteBuffer map = segmentMaps.get(fileNumber);
+		if (map == null)
+			return null;
+		ByteBuffer slice = map.duplicate();
+		slice.limit((int) position + size);
+		slice.position((int) position);
+		return slice.slice();
+	}
+
+	/**
+	 * Maps the data files except the last one, it is still being appended
+	 * @throws IOException
+	 */
+	private void mapDataFiles() throws IOException {
+		segmentMaps.clear();
+		if (!memoryMapping)
+			return;
+		for (int i = 0; i < dfcs.size() - 1; i++)
+			segmentMaps.add(mapDataFile(dfcs.get(i)));
+	}
+
+	/**
+	 * Maps the completed data file to the memory
+	 * @param dfc - channel of the data file
+	 * @return read-only mapping of the whole file, or null if the file is too large to be mapped
+	 * @throws IOException
+	 */
+	private static ByteBuffer mapDataFile(FileChannel dfc) throws IOException {
+		long size = dfc.size();
+		if (size > Integer.MAX_VALUE)
+			return null;
+		return dfc.map(FileChannel.MapMode.READ_ONLY, 0, size);
+	}
+
+	/**
+	 * Converts the index file written in the previous version of the format to the current one.
+	 * In the legacy format every index is a length prefixed Java serialized object.
+	 * @param version - version of the index file
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	private void migrateIndexFile(int version) throws IOException, ClassNotFoundException {
+		FileChannel newIndexChannel = createIndexFile(FILE_COPY_PREFIX);
+		IndexCodec newIndexCodec = new IndexCodec();
+		ByteBuffer byteBuffer = ByteBuffer.allocate(1 << 17);
+		long indexOffset = IndexFormat.HEADER_SIZE;
+		boolean legacy = version == IndexFormat.LEGACY_VERSION;
+		IndexReader reader = legacy ? null : new IndexReader(ifc, IndexFormat.HEADER_SIZE, new IndexCodec(version));
+		ifc.position(0);
+		while (legacy ? ifc.position() < ifc.size() : reader.hasNext()) {
+			Index index = legacy ? readIndexFromDisk() : reader.next();
+			int keyLength = IndexFormat.keyLength(index.getKey());
+			if (byteBuffer.remaining() < newIndexCodec.maxRecordSize(keyLength)) {
+				byteBuffer.flip();
+				indexOffset += newIndexChannel.write(byteBuffer, indexOffset);
+				byteBuffer.clear();
+			}
+			newIndexCodec.write(index, keyLength, byteBuffer);
+		}
+		byteBuffer.flip();
+		newIndexChannel.write(byteBuffer, indexOffset);
+		newIndexChannel.close();
+
+		// replace the legacy index file
+		ifc.close();
+		Files.delete(Paths.get(constructIndexFileName("")));
+		Files.move(Paths.get(constructIndexFileName(FILE_COPY_PREFIX)),
+				Paths.get(constructIndexFileName("")));
+		ifc = createIndexFile("");
+	}
+
+	/**
+	 * Reads the index written in the legacy format from the index file
 	 * @return read index
 	 * @throws IOException
 	 * @throws ClassNotFoundException
@@ -253,20 +1327,6 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 		return index;
 	}
 
-	/**
-	 * Serializes the object to a byte array
-	 * @param value  - serializable object
-	 * @return serialized object as a byte array
-	 * @throws IOException
-	 */
-	private byte[] serialize(Object value) throws IOException {
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		ObjectOutputStream oos = new ObjectOutputStream(baos);
-		oos.writeObject(value);
-		oos.flush();
-		return baos.toByteArray();
-	}
-
 	/**
 	 * Deserializes the object from a byte array
 	 * @param byteArray - array
@@ -286,9 +1346,29 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 	 * Relocates index and data files on a disk if the actual Store's loading is less than the load factor
 	 */
 	private void relocate() {
+		// the readers must not see the index entries pointing to the files being replaced
+		filesLock.writeLock().lock();
+		try {
+			relocateFiles();
+		} finally {
+			filesLock.writeLock().unlock();
+		}
+	}
+
+	private void relocateFiles() {
+		// the mappings are dropped before their files are deleted, the pages are released once the buffers are collected
+		segmentMaps.clear();
+		if (objectCache != null)
+			objectCache.clear();
+		try {
+			flushWrites();
+		} catch (IOException exc) {
+			throw new RuntimeException(exc);
+		}
 		capacity = 0;
 
 		FileChannel newIndexChannel = createIndexFile(FILE_COPY_PREFIX);
+		IndexCodec newIndexCodec = new IndexCodec();
 
 		List<FileChannel> newDataChannels = new ArrayList<>();
 		createNextDataFile(newDataChannels, FILE_COPY_PREFIX);
@@ -296,12 +1376,23 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 		int prevDataFileNumber = 0;
 
 		try {
-			ifc.position(0);
-			while (ifc.position() < ifc.size()) {
-				Index index = readIndexFromDisk();
+			// retrain the dictionary to track the drift of values, the values are compressed with the new dictionary
+			boolean retrained = false;
+			if (compression == Compression.DICTIONARY) {
+				List<byte[]> samples = sampleValues(DICTIONARY_SAMPLES);
+				if (samples.size() >= DICTIONARY_SAMPLES || dictionary == null && !samples.isEmpty()) {
+					dictionarySamples = samples;
+					trainDictionary(FILE_COPY_PREFIX);
+					retrained = true;
+				}
+			}
+
+			IndexReader reader = new IndexReader(ifc, IndexFormat.HEADER_SIZE, new IndexCodec());
+			while (reader.hasNext()) {
+				Index index = reader.next();
 				if (!index.isDeleted()) {
 					String key = index.getKey();
-					indexMap.put(key, appendOnDisk(key, get(key), newIndexChannel, newDataChannels, true));
+					indexMap.put(key, appendOnDisk(key, readValue(index), newIndexChannel, newIndexCodec, newDataChannels, true));
 				}
 				if (prevDataFileNumber != index.getFileNumber()) {
 					// delete previous data file
@@ -311,9 +1402,29 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 				prevDataFileNumber = index.getFileNumber();
 
 			}
-			// delete previous data file
-			dfcs.get(prevDataFileNumber).close();
-			Files.delete(Paths.get(constructDataFileName(prevDataFileNumber, "")));
+			// delete previous data files, the last one may have no index yet
+			for (int i = prevDataFileNumber; i < dfcs.size(); i++) {
+				dfcs.get(i).close();
+				Files.delete(Paths.get(constructDataFileName(i, "")));
+			}
+
+			// replace the dictionary, all the values are recompressed
+			if (retrained) {
+				Files.move(Paths.get(constructDictionaryFileName(FILE_COPY_PREFIX)),
+						Paths.get(constructDictionaryFileName("")), StandardCopyOption.REPLACE_EXISTING);
+				dictionary = compressor.getDictionary();
+			} else if (compression != Compression.DICTIONARY && dictionary != null) {
+				Files.delete(Paths.get(constructDictionaryFileName("")));
+				dictionary = null;
+				compressor.setDictionary(null);
+			}
+
+			// the new files must be durable before they replace the previous ones
+			if (durabilityPolicy.getMode() != DurabilityPolicy.Mode.NONE) {
+				for (FileChannel channel : newDataChannels)
+					channel.force(false);
+				newIndexChannel.force(false);
+			}
 
 			// rename new data file
 			for (int i = 0; i < newDataChannels.size(); i++) {
@@ -323,6 +1434,10 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 						Paths.get(constructDataFileName(i, "")));
 			}
 			collectDataFiles();
+			mapDataFiles();
+			// the blocks of the previous files have been cached by the relocation
+			if (blockCache != null)
+				blockCache.clear();
 
 			// delete previous index file
 			ifc.close();
@@ -333,8 +1448,10 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 					Paths.get(constructIndexFileName("")));
 
 			ifc = createIndexFile("");
+			indexCodec = newIndexCodec;
+			locateFileEnds();
 
-		} catch (IOException | ClassNotFoundException exc) {
+		} catch (IOException exc) {
 			// TODO to write a recovery scenario
 			throw new IllegalStateException("An error has occurred during data relocation", exc);
 		}
@@ -361,7 +1478,7 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 					} catch (Exception exc) {
 						throw new IllegalStateException("Store's data file opening error", exc);
 					}
-				}).collect(Collectors.toList());
+				}).collect(Collectors.toCollection(CopyOnWriteArrayList::new));
 		if (dfcs.isEmpty())
 			createNextDataFile(dfcs, "");
 	}
@@ -402,6 +1519,8 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 		String path = constructIndexFileName(suffix);
 		try {
 			FileChannel ch = new RandomAccessFile(path, "rw").getChannel();
+			if (ch.size() == 0)
+				IndexFormat.writeHeader(ch);
 			ch.force(true);
 			return ch;
 		} catch (IOException exc) {
@@ -409,6 +1528,23 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 		}
 	}
 
+	/**
+	 * Constructs the compression dictionary file name
+	 * @param suffix - suffix of the file name
+	 * @return constructed file name
+	 */
+	private String constructDictionaryFileName(String suffix) {
+		return Paths.get(directory, FILE_PREFIX + suffix + DICT_FILE_EXT).toAbsolutePath().toString();
+	}
+
+	/**
+	 * Constructs the class dictionary file name
+	 * @return constructed file name
+	 */
+	private String constructClassDictionaryFileName() {
+		return Paths.get(directory, FILE_PREFIX + CFILE_EXT).toAbsolutePath().toString();
+	}
+
 	/**
 	 * Constructs the index file name
 	 * @param suffix - suffix of the file name
@@ -417,4 +1553,46 @@ public class Store<T extends Serializable> implements AppendableStore<T> {
 	private String constructIndexFileName(String suffix) {
 		return Paths.get(directory, FILE_PREFIX + suffix + IFILE_EXT).toAbsolutePath().toString();
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Rejection of the key of a batch, it's thrown before anything of the batch is written,
+	 * so the values may be appended again without the rejected one
+	 */
+	static class RejectedKeyException extends IllegalArgumentException {
+
+		private static final long serialVersionUID = 1L;
+
+		RejectedKeyException(String message) {
+			super(message);
+		}
+
+	}
+
+	/**
+	 * Source reading ranges of an uncompressed value directly from the data file
+	 */
+	private class DataSource implements RecordSource {
+
+		private final Index index;
+
+		DataSource(Index index) {
+			this.index = index;
+		}
+
+		@Override
+		public int size() {
+			return index.getDataSize();
+		}
+
+		@Override
+		public ByteBuffer read(int position, int length) throws IOException {
+			if (position < 0 || length < 0 || position + length > index.getDataSize())
+				throw new EOFException("The range exceeds the value");
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			readData(index.getFileNumber(), index.getDataOffset() + position, buffer);
+			buffer.flip();
+			return buffer;
+		}
+
+	}
+}
@@ -0,0 +1,258 @@
+package task.store;
+
+/**
+ * Optional settings of the Store
+ * 
+ * @author Fedor Trofimov
+ *
+ */
+public class StoreConfig {
+
+	private float loadFactor = 0.75f;
+	private Compression compression = Compression.NONE;
+	private boolean classDictionary;
+	private DurabilityPolicy durabilityPolicy = DurabilityPolicy.none();
+	private int writeBufferSize;
+	private long segmentSize = 1 << 20;
+	private boolean preallocation;
+	private int encodingThreads;
+	private boolean memoryMapping;
+	private long blockCacheSize;
+	private int objectCacheSize;
+	private long writeBufferDelay = 100;
+
+	/**
+	 * 
+	 * @return load factor, the Store relocates its files when the share of live objects drops below it
+	 */
+	public float getLoadFactor() {
+		return loadFactor;
+	}
+
+	/**
+	 * Sets the load factor, 0.75 by default
+	 * @param loadFactor - load factor
+	 * @return this config
+	 */
+	public StoreConfig setLoadFactor(float loadFactor) {
+		this.loadFactor = loadFactor;
+		return this;
+	}
+
+	/**
+	 * 
+	 * @return compression algorithm applied to appended values
+	 */
+	public Compression getCompression() {
+		return compression;
+	}
+
+	/**
+	 * Sets the compression algorithm applied to appended values, values aren't compressed by default.
+	 * The algorithm is chosen per value, so values written with different settings coexist in the Store.
+	 * @param compression - compression algorithm
+	 * @return this config
+	 */
+	public StoreConfig setCompression(Compression compression) {
+		this.compression = compression;
+		return this;
+	}
+
+	/**
+	 * 
+	 * @return true if class descriptors of Java serialized values are kept in the per-store dictionary
+	 */
+	public boolean isClassDictionary() {
+		return classDictionary;
+	}
+
+	/**
+	 * Enables the per-store dictionary of class descriptors, so a Java serialized value refers to
+	 * the descriptors of its classes by short identifiers instead of repeating them.
+	 * The mode is applicable to the Java serialization codec only and remains enabled for the Store once its dictionary is created.
+	 * @param classDictionary - true to enable the dictionary
+	 * @return this config
+	 */
+	public StoreConfig setClassDictionary(boolean classDictionary) {
+		this.classDictionary = classDictionary;
+		return this;
+	}
+
+	/**
+	 * 
+	 * @return policy of flushing written files to the storage device
+	 */
+	public DurabilityPolicy getDurabilityPolicy() {
+		return durabilityPolicy;
+	}
+
+	/**
+	 * Sets the policy of flushing written files to the storage device, files aren't forced by default
+	 * @param durabilityPolicy - durability policy
+	 * @return this config
+	 */
+	public StoreConfig setDurabilityPolicy(DurabilityPolicy durabilityPolicy) {
+		this.durabilityPolicy = durabilityPolicy;
+		return this;
+	}
+
+	/**
+	 * 
+	 * @return size of the write buffers in bytes, 0 if appends are written directly
+	 */
+	public int getWriteBufferSize() {
+		return writeBufferSize;
+	}
+
+	/**
+	 * Enables the write-behind mode, appended values and indexes are collected in the write buffers of the specified size
+	 * and written on filling of the buffers, on expiry of the write buffer delay, on close or before a flush required by the durability policy.
+	 * Values aren't buffered by default.
+	 * @param writeBufferSize - size of each of the data and index write buffers in bytes, 0 to disable buffering
+	 * @return this config
+	 */
+	public StoreConfig setWriteBufferSize(int writeBufferSize) {
+		this.writeBufferSize = writeBufferSize;
+		return this;
+	}
+
+	/**
+	 * 
+	 * @return maximum time in milliseconds appended values stay in the write buffers
+	 */
+	public long getWriteBufferDelay() {
+		return writeBufferDelay;
+	}
+
+	/**
+	 * Sets the maximum time appended values stay in the write buffers, 100 milliseconds by default
+	 * @param writeBufferDelay - time in milliseconds
+	 * @return this config
+	 */
+	public StoreConfig setWriteBufferDelay(long writeBufferDelay) {
+		this.writeBufferDelay = writeBufferDelay;
+		return this;
+	}
+
+	/**
+	 * 
+	 * @return size of a data file in bytes, a new data file is started once the last one exceeds it
+	 */
+	public long getSegmentSize() {
+		return segmentSize;
+	}
+
+	/**
+	 * Sets the size of a data file, 1 Mb by default. The size can be changed between openings of the Store,
+	 * it applies to the data files created afterwards.
+	 * @param segmentSize - size in bytes
+	 * @return this config
+	 */
+	public StoreConfig setSegmentSize(long segmentSize) {
+		this.segmentSize = segmentSize;
+		return this;
+	}
+
+	/**
+	 * 
+	 * @return true if data files are filled up to the segment size on creation
+	 */
+	public boolean isPreallocation() {
+		return preallocation;
+	}
+
+	/**
+	 * Enables preallocation of data files, a new data file is filled with zeros up to the segment size at once,
+	 * so its blocks are allocated before the values are appended and appends don't change its size.
+	 * The unused space is cut off once the file is completed or the Store is closed.
+	 * Data files aren't preallocated by default.
+	 * @param preallocation - true to preallocate data files
+	 * @return this config
+	 */
+	public StoreConfig setPreallocation(boolean preallocation) {
+		this.preallocation = preallocation;
+		return this;
+	}
+
+	/**
+	 * 
+	 * @return number of threads encoding values appended asynchronously, 0 if they are encoded by the writer thread
+	 */
+	public int getEncodingThreads() {
+		return encodingThreads;
+	}
+
+	/**
+	 * Sets the number of threads encoding values appended asynchronously in parallel, the values are still written in the order of appending.
+	 * The codec must be thread-safe. Values are encoded by the writer thread by default.
+	 * @param encodingThreads - number of threads, 0 to encode values by the writer thread
+	 * @return this config
+	 */
+	public StoreConfig setEncodingThreads(int encodingThreads) {
+		this.encodingThreads = encodingThreads;
+		return this;
+	}
+
+	/**
+	 * 
+	 * @return true if completed data files are read through memory mapping
+	 */
+	public boolean isMemoryMapping() {
+		return memoryMapping;
+	}
+
+	/**
+	 * Enables memory mapping of completed data files. A data file doesn't change once the next one is started,
+	 * so it is mapped and its values are read from the memory, the last data file is read through its channel.
+	 * The mapping is supported on POSIX systems only. The relocation deletes the mapped files, Java can't unmap them
+	 * while the buffers returned by the raw reads may still refer to their pages, so the pages stay mapped until
+	 * the buffers are garbage collected. Windows doesn't allow to delete a mapped file, the Store rejects the mapping there.
+	 * Data files aren't mapped by default.
+	 * @param memoryMapping - true to map completed data files
+	 * @return this config
+	 */
+	public StoreConfig setMemoryMapping(boolean memoryMapping) {
+		this.memoryMapping = memoryMapping;
+		return this;
+	}
+
+	/**
+	 * 
+	 * @return size of the cache of data file blocks in bytes, 0 if the blocks aren't cached
+	 */
+	public long getBlockCacheSize() {
+		return blockCacheSize;
+	}
+
+	/**
+	 * Sets the size of the cache of data file blocks held out of the Java heap. The blocks of completed data files
+	 * read recently are cached, the blocks of memory mapped files aren't. The blocks aren't cached by default.
+	 * @param blockCacheSize - size in bytes, 0 to disable the cache
+	 * @return this config
+	 */
+	public StoreConfig setBlockCacheSize(long blockCacheSize) {
+		this.blockCacheSize = blockCacheSize;
+		return this;
+	}
+
+	/**
+	 * 
+	 * @return maximum number of decoded values cached, 0 if the values aren't cached
+	 */
+	public int getObjectCacheSize() {
+		return objectCacheSize;
+	}
+
+	/**
+	 * Sets the maximum number of decoded values cached by the Store, so the values read repeatedly aren't read and decoded again.
+	 * A value is cached only if its key is read more frequently than the key of the value it evicts.
+	 * The cached instance is returned to every reader, so it must not be modified. The values aren't cached by default.
+	 * @param objectCacheSize - number of values, 0 to disable the cache
+	 * @return this config
+	 */
+	public StoreConfig setObjectCacheSize(int objectCacheSize) {
+		this.objectCacheSize = objectCacheSize;
+		return this;
+	}
+
+}
@@ -0,0 +1,105 @@
+package task.store;
+
+import static org.junit.Assert.*;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class BlockCacheTest {
+
+	@Test
+	public void testReadAndEviction() throws IOException {
+		File file = File.createTempFile("block", ".dat");
+		file.deleteOnExit();
+		int size = 3 * BlockCache.BLOCK_SIZE + 100;
+		ByteBuffer content = ByteBuffer.allocate(size);
+		for (int i = 0; i < size; i++)
+			content.put((byte) i);
+		content.flip();
+		try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+			channel.write(content);
+			BlockCache cache = new BlockCache(2 * BlockCache.BLOCK_SIZE);
+
+			// the range spans two blocks
+			assertRange(cache, channel, BlockCache.BLOCK_SIZE - 10, 20);
+			assertEquals(2, cache.getMisses());
+			assertRange(cache, channel, 5, 10);
+			assertEquals(1, cache.getHits());
+
+			// the hand clears the mark of the block 0 and evicts the block 1
+			assertRange(cache, channel, 2 * BlockCache.BLOCK_SIZE, 10);
+			assertEquals(3, cache.getMisses());
+			assertRange(cache, channel, 0, 10);
+			assertEquals(3, cache.getMisses());
+			assertRange(cache, channel, BlockCache.BLOCK_SIZE, 10);
+			assertEquals(4, cache.getMisses());
+
+			// the last block is incomplete
+			assertRange(cache, channel, size - 50, 50);
+			try {
+				cache.read(0, size - 10, ByteBuffer.allocate(20), channel);
+				fail();
+			} catch (EOFException exc) {
+			}
+
+			cache.clear();
+			assertRange(cache, channel, 0, 10);
+			assertEquals(4, cache.getHits());
+		}
+		file.delete();
+	}
+
+	@Test
+	public void testConcurrentReads() throws Exception {
+		File file = File.createTempFile("block", ".dat");
+		file.deleteOnExit();
+		int size = 8 * BlockCache.BLOCK_SIZE;
+		ByteBuffer content = ByteBuffer.allocate(size);
+		for (int i = 0; i < size; i++)
+			content.put((byte) i);
+		content.flip();
+		try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+			channel.write(content);
+			// the readers outnumber the blocks, some of them read past the cache
+			BlockCache cache = new BlockCache(2 * BlockCache.BLOCK_SIZE);
+			AtomicReference<Throwable> failure = new AtomicReference<>();
+			Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; t++) {
+				int seed = t;
+				threads[t] = new Thread(() -> {
+					Random random = new Random(seed);
+					try {
+						for (int i = 0; i < 2000; i++) {
+							int length = 1 + random.nextInt(2 * BlockCache.BLOCK_SIZE);
+							assertRange(cache, channel, random.nextInt(size - length), length);
+						}
+					} catch (Throwable exc) {
+						failure.compareAndSet(null, exc);
+					}
+				});
+				threads[t].start();
+			}
+			for (Thread thread : threads)
+				thread.join();
+			assertNull(failure.get());
+		}
+		file.delete();
+	}
+
+	private static void assertRange(BlockCache cache, FileChannel channel, int position, int length) throws IOException {
+		ByteBuffer dst = ByteBuffer.allocate(length);
+		cache.read(0, position, dst, channel);
+		assertFalse(dst.hasRemaining());
+		for (int i = 0; i < length; i++)
+			assertEquals((byte) (position + i), dst.get(i));
+	}
+
+}
@@ -0,0 +1,73 @@
+package task.store;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CompressorTest {
+
+	private static final String statement = "Java is a general-purpose computer-programming language that is concurrent, class-based, object-oriented, and specifically designed to have as few implementation dependencies as possible. ";
+
+	@Test
+	public void testRepetitiveData() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 50; i++)
+			sb.append(statement);
+		byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+		Compressor compressor = new Compressor();
+		for (Compression compression : new Compression[] { Compression.DEFLATE, Compression.LZ }) {
+			ByteBuffer compressed = compressor.compress(compression, ByteBuffer.wrap(data));
+			assertNotNull(compressed);
+			assertTrue(compressed.remaining() < data.length / 10);
+			assertArrayEquals(data, toArray(Compressor.decompress(compression, compressed)));
+		}
+		compressor.end();
+	}
+
+	@Test
+	public void testIncompressibleData() {
+		byte[] data = new byte[1000];
+		new Random(1).nextBytes(data);
+		Compressor compressor = new Compressor();
+		assertNull(compressor.compress(Compression.DEFLATE, ByteBuffer.wrap(data)));
+		assertNull(compressor.compress(Compression.LZ, ByteBuffer.wrap(data)));
+		compressor.end();
+	}
+
+	@Test
+	public void testLzRoundTrip() throws IOException {
+		Random random = new Random(7);
+		int[] table = Lz.newTable();
+		for (int len = 0; len < 2000; len += 1 + len / 4) {
+			byte[] data = new byte[len];
+			for (int i = 0; i < len; i++)
+				data[i] = (byte) ('a' + random.nextInt(3));
+			byte[] compressed = new byte[Lz.maxCompressedLength(len) + 3];
+			int compressedLength = Lz.compress(data, 0, len, compressed, 3, table);
+			byte[] decompressed = new byte[len];
+			Lz.decompress(ByteBuffer.wrap(compressed, 3, compressedLength), decompressed, 0, len);
+			assertArrayEquals("length " + len, data, decompressed);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testCorruptedLzData() throws IOException {
+		byte[] data = statement.getBytes(StandardCharsets.UTF_8);
+		byte[] compressed = new byte[Lz.maxCompressedLength(data.length)];
+		int compressedLength = Lz.compress(data, 0, data.length, compressed, 0, Lz.newTable());
+		Lz.decompress(ByteBuffer.wrap(Arrays.copyOf(compressed, compressedLength / 2)), new byte[data.length], 0, data.length);
+	}
+
+	private static byte[] toArray(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+}
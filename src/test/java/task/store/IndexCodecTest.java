@@ -0,0 +1,130 @@
+package task.store;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class IndexCodecTest {
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		List<Index> indexes = new ArrayList<>();
+		String[] keys = { UUID.randomUUID().toString(), "user:000001", "user:000002", "user:000010",
+				"\u043a\u043b\u044e\u0447", "\ud83d\ude00 key", UUID.randomUUID().toString().toUpperCase(), "", "user:000010a" };
+		long dataOffset = 0;
+		for (int i = 0; i < 100; i++) {
+			String key = i < keys.length ? keys[i] : i % 3 == 0 ? UUID.randomUUID().toString() : "key" + i;
+			int fileNumber = i / 30;
+			if (i % 30 == 0)
+				dataOffset = 0;
+			int dataSize = 10 + i * 7;
+			// the offset goes backwards sometimes
+			long offset = i % 11 == 0 ? dataOffset / 2 : dataOffset;
+			Compression compression = Compression.values()[i % Compression.values().length];
+			indexes.add(new Index(i % 5 == 0, fileNumber, offset, dataSize, 0, key, compression));
+			dataOffset += dataSize;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		IndexCodec encoder = new IndexCodec();
+		List<Integer> offsets = new ArrayList<>();
+		for (Index index : indexes) {
+			offsets.add(buffer.position());
+			encoder.write(index, IndexFormat.keyLength(index.getKey()), buffer);
+		}
+		buffer.flip();
+
+		IndexCodec decoder = new IndexCodec();
+		for (int i = 0; i < indexes.size(); i++) {
+			Index expected = indexes.get(i);
+			Index actual = decoder.read(buffer, offsets.get(i));
+			assertNotNull(actual);
+			assertEquals(expected.getKey(), actual.getKey());
+			assertEquals(expected.isDeleted(), actual.isDeleted());
+			assertEquals(expected.getFileNumber(), actual.getFileNumber());
+			assertEquals(expected.getDataOffset(), actual.getDataOffset());
+			assertEquals(expected.getDataSize(), actual.getDataSize());
+			assertEquals(expected.getCompression(), actual.getCompression());
+			assertEquals((long) offsets.get(i), actual.getIndexOffset());
+			// the deletion mark is rewritten in place
+			assertEquals(IndexFormat.flags(expected), buffer.get(offsets.get(i)));
+		}
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public void testMarkAndReset() throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 14);
+		ByteBuffer failed = ByteBuffer.allocate(1 << 12);
+		IndexCodec encoder = new IndexCodec();
+		List<Index> indexes = new ArrayList<>();
+		char[] longKey = new char[100];
+		for (int i = 0; i < 40; i++) {
+			Arrays.fill(longKey, (char) ('a' + i % 3));
+			String key = i % 4 == 0 ? new String(longKey) + i : "key" + i;
+			Index index = new Index(false, i / 10, i % 10 * 100, 100, 0, key, Compression.NONE);
+			// the record written before the failure is discarded
+			encoder.mark();
+			failed.clear();
+			encoder.write(new Index(false, 7, 5000, 1, 0, key + "lost", Compression.NONE), key.length() + 4, failed);
+			encoder.reset();
+			encoder.write(index, IndexFormat.keyLength(key), buffer);
+			indexes.add(index);
+		}
+		buffer.flip();
+
+		IndexCodec decoder = new IndexCodec();
+		for (Index expected : indexes) {
+			Index actual = decoder.read(buffer, 0);
+			assertEquals(expected.getKey(), actual.getKey());
+			assertEquals(expected.getFileNumber(), actual.getFileNumber());
+			assertEquals(expected.getDataOffset(), actual.getDataOffset());
+		}
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public void testCompactUuidKeys() {
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 10);
+		IndexCodec encoder = new IndexCodec();
+		String key = UUID.randomUUID().toString();
+		encoder.write(new Index(false, 0, 0, 120, 0, key), key.length(), buffer);
+		int first = buffer.position();
+		key = UUID.randomUUID().toString();
+		encoder.write(new Index(false, 0, 120, 130, 0, key), key.length(), buffer);
+		assertTrue(first <= 22);
+		assertTrue(buffer.position() - first <= 21);
+	}
+
+	@Test
+	public void testIncompleteRecord() throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 10);
+		IndexCodec encoder = new IndexCodec();
+		encoder.write(new Index(false, 0, 0, 10, 0, "first"), 5, buffer);
+		encoder.write(new Index(false, 0, 10, 10, 0, "second"), 6, buffer);
+		int end = buffer.position();
+
+		IndexCodec decoder = new IndexCodec();
+		for (int limit = 0; limit < end; limit++) {
+			buffer.position(0).limit(limit);
+			Index index = decoder.read(buffer, 0);
+			if (index != null) {
+				assertEquals("first", index.getKey());
+				int position = buffer.position();
+				assertNull(decoder.read(buffer, position));
+				assertEquals(position, buffer.position());
+				decoder = new IndexCodec();
+			} else {
+				assertEquals(0, buffer.position());
+			}
+		}
+	}
+
+}
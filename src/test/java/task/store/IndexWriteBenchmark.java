@@ -0,0 +1,127 @@
+package task.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.UUID;
+
+import task.store.testobjects.Car;
+
+/**
+ * Latency of emitting an index record: the record written as a body and a length prefix with a backward seek
+ * against the same length prefixed record written with a single positional write.
+ * Both ways write the same bytes encoded in advance, so only the writes are measured.
+ * The end-to-end append latency of the Store is measured as well.
+ * Run it as a Java application, it isn't a part of the test suite.
+ */
+public class IndexWriteBenchmark {
+
+	private static final int WARMUP = 20000;
+	private static final int N = 100000;
+
+	public static void main(String[] args) throws IOException {
+		File dir = new File(args.length > 0 ? args[0] : "tmp_benchmark/");
+		dir.mkdirs();
+		String[] keys = new String[WARMUP + N];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = UUID.randomUUID().toString();
+		byte[][] records = encode(keys);
+
+		report("double index write", doubleWrite(new File(dir, "double.ind"), records));
+		report("single index write", singleWrite(new File(dir, "single.ind"), records));
+		report("Store.append", append(new File(dir, "store"), keys));
+	}
+
+	/**
+	 * Encodes the index records of the keys out of the measurement
+	 */
+	private static byte[][] encode(String[] keys) {
+		byte[][] records = new byte[keys.length][];
+		IndexCodec codec = new IndexCodec();
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		for (int i = 0; i < keys.length; i++) {
+			buffer.clear();
+			codec.write(new Index(false, 0, i * 100L, 100, 0, keys[i]), IndexFormat.keyLength(keys[i]), buffer);
+			records[i] = Arrays.copyOf(buffer.array(), buffer.position());
+		}
+		return records;
+	}
+
+	/**
+	 * The body is written after the length prefix space, then the length is written with a backward seek
+	 */
+	private static long[] doubleWrite(File file, byte[][] records) throws IOException {
+		long[] latencies = new long[N];
+		ByteBuffer body = ByteBuffer.allocateDirect(256);
+		ByteBuffer length = ByteBuffer.allocateDirect(4);
+		try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+			channel.truncate(0);
+			for (int i = 0; i < records.length; i++) {
+				long start = System.nanoTime();
+				long indexOffset = channel.size();
+				body.clear();
+				body.put(records[i]).flip();
+				channel.position(indexOffset + 4);
+				channel.write(body);
+				length.clear();
+				length.putInt((int) (channel.size() - indexOffset - 4)).flip();
+				channel.write(length, indexOffset);
+				if (i >= WARMUP)
+					latencies[i - WARMUP] = System.nanoTime() - start;
+			}
+		}
+		file.delete();
+		return latencies;
+	}
+
+	/**
+	 * The length and the body are built in one buffer and written with a single positional write at the end tracked in a memory
+	 */
+	private static long[] singleWrite(File file, byte[][] records) throws IOException {
+		long[] latencies = new long[N];
+		ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+		try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+			channel.truncate(0);
+			long indexEnd = 0;
+			for (int i = 0; i < records.length; i++) {
+				long start = System.nanoTime();
+				buffer.clear();
+				buffer.putInt(records[i].length).put(records[i]).flip();
+				while (buffer.hasRemaining())
+					indexEnd += channel.write(buffer, indexEnd);
+				if (i >= WARMUP)
+					latencies[i - WARMUP] = System.nanoTime() - start;
+			}
+		}
+		file.delete();
+		return latencies;
+	}
+
+	private static long[] append(File dir, String[] keys) {
+		long[] latencies = new long[N];
+		dir.mkdirs();
+		Store<Car> store = new Store<>(dir.getPath());
+		Car car = new Car("Volvo", "XC90", 2015);
+		for (int i = 0; i < keys.length; i++) {
+			long start = System.nanoTime();
+			store.append(keys[i], car);
+			if (i >= WARMUP)
+				latencies[i - WARMUP] = System.nanoTime() - start;
+		}
+		store.close();
+		for (File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+		return latencies;
+	}
+
+	private static void report(String name, long[] latencies) {
+		Arrays.sort(latencies);
+		System.out.printf("%-20s p50 %7.2f us  p99 %7.2f us  p99.9 %7.2f us%n", name,
+				latencies[N / 2] / 1000.0, latencies[N * 99 / 100] / 1000.0, latencies[N * 999 / 1000] / 1000.0);
+	}
+
+}
@@ -0,0 +1,142 @@
+package task.store;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import task.store.testobjects.Car;
+
+public class LogStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReload() throws IOException {
+		File dir = folder.newFolder();
+		StoreConfig config = new StoreConfig().setSegmentSize(1 << 12);
+		LogStore<Car> s = new LogStore<>(dir.getPath(), new JavaSerializationCodec<>(), config);
+		for (int i = 0; i < 200; i++)
+			s.append(String.valueOf(i), new Car("Volvo", "XC90 " + i, 2015));
+		assertTrue(s.remove("0"));
+		assertFalse(s.remove("0"));
+		s.append("0", new Car("Volvo", "XC60", 2017));
+		assertEquals("XC60", s.get("0").model);
+		s.close();
+
+		// the completed log files have hints
+		assertTrue(new File(dir, "log_0001.hnt").exists());
+		assertTrue(new File(dir, "log_0002.log").exists());
+
+		// a lost hint file is restored by the scan of its log file
+		assertTrue(new File(dir, "log_0001.hnt").delete());
+		// a torn record at the end of the log is cut off
+		File[] logs = dir.listFiles((d, name) -> name.endsWith(".log"));
+		File last = logs[0];
+		for (File log : logs)
+			if (log.getName().compareTo(last.getName()) > 0)
+				last = log;
+		long length = last.length();
+		try (FileOutputStream out = new FileOutputStream(last, true)) {
+			out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13 });
+		}
+
+		s = new LogStore<>(dir.getPath(), new JavaSerializationCodec<>(), config);
+		assertEquals(length, last.length());
+		assertTrue(new File(dir, "log_0001.hnt").exists());
+		assertEquals("XC60", s.get("0").model);
+		for (int i = 1; i < 200; i++)
+			assertEquals("XC90 " + i, s.get(String.valueOf(i)).model);
+		s.append("last", new Car("Volvo", "V40", 2014));
+		s.close();
+
+		s = new LogStore<>(dir.getPath(), new JavaSerializationCodec<>(), config);
+		assertEquals("V40", s.get("last").model);
+		s.close();
+	}
+
+	@Test
+	public void testRelocation() throws IOException {
+		File dir = folder.newFolder();
+		StoreConfig config = new StoreConfig().setSegmentSize(1 << 12).setLoadFactor(0.5f);
+		LogStore<Car> s = new LogStore<>(dir.getPath(), new JavaSerializationCodec<>(), config);
+		for (int i = 0; i < 200; i++)
+			s.append(String.valueOf(i), new Car("Volvo", "XC90 " + i, 2015));
+		int files = dir.list().length;
+		for (int i = 0; i < 150; i++)
+			assertTrue(s.remove(String.valueOf(i)));
+		assertTrue(dir.list().length < files);
+		assertNull(s.get("0"));
+		assertEquals("XC90 199", s.get("199").model);
+		s.close();
+
+		s = new LogStore<>(dir.getPath(), new JavaSerializationCodec<>(), config);
+		assertNull(s.get("100"));
+		for (int i = 150; i < 200; i++)
+			assertEquals("XC90 " + i, s.get(String.valueOf(i)).model);
+		s.close();
+	}
+
+	@Test
+	public void testInterruptedCompaction() throws IOException {
+		StoreConfig config = new StoreConfig().setSegmentSize(1 << 12);
+		File dir = folder.newFolder();
+		File compacted = folder.newFolder();
+		for (File d : new File[] { dir, compacted }) {
+			// the store is compacted only in the second directory
+			config.setLoadFactor(d == dir ? 0.01f : 0.5f);
+			LogStore<Car> s = new LogStore<>(d.getPath(), new JavaSerializationCodec<>(), config);
+			for (int i = 0; i < 200; i++)
+				s.append(String.valueOf(i), new Car("Volvo", "XC90 " + i, 2015));
+			for (int i = 0; i < 150; i++)
+				assertTrue(s.remove(String.valueOf(i)));
+			s.close();
+		}
+		String[] logs = compacted.list((d, name) -> name.endsWith(".log"));
+		assertTrue(logs.length < dir.list((d, name) -> name.endsWith(".log")).length);
+
+		// the uncommitted copies are discarded
+		Files.copy(new File(compacted, "log_0000.log").toPath(), new File(dir, "log_0000_copy.log").toPath());
+		LogStore<Car> s = new LogStore<>(dir.getPath(), new JavaSerializationCodec<>(), config);
+		assertFalse(new File(dir, "log_0000_copy.log").exists());
+		assertNull(s.get("0"));
+		assertEquals("XC90 199", s.get("199").model);
+		s.close();
+
+		// the committed copies replace the previous files, the first one has been replaced before the interruption
+		for (String name : compacted.list()) {
+			String copy = name.replaceFirst("\\.", "_copy.");
+			Files.copy(new File(compacted, name).toPath(), new File(dir, name.startsWith("log_0000") ? name : copy).toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+		Files.write(new File(dir, "log.compaction").toPath(), ByteBuffer.allocate(4).putInt(logs.length).array());
+		s = new LogStore<>(dir.getPath(), new JavaSerializationCodec<>(), config);
+		assertFalse(new File(dir, "log.compaction").exists());
+		String[] expected = compacted.list();
+		String[] actual = dir.list();
+		Arrays.sort(expected);
+		Arrays.sort(actual);
+		assertArrayEquals(expected, actual);
+		assertNull(s.get("100"));
+		for (int i = 150; i < 200; i++)
+			assertEquals("XC90 " + i, s.get(String.valueOf(i)).model);
+		s.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCompressionNotApplicable() {
+		new LogStore<Car>(folder.getRoot().getPath(), new JavaSerializationCodec<>(),
+				new StoreConfig().setCompression(Compression.LZ));
+	}
+
+}
@@ -0,0 +1,80 @@
+package task.store;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class ObjectCacheTest {
+
+	@Test
+	public void testFrequencyAdmission() {
+		ObjectCache<String, Integer> cache = new ObjectCache<>(2);
+		for (String key : new String[] { "a", "b" }) {
+			assertNull(cache.get(key));
+			cache.put(key, key.length(), () -> true);
+		}
+		for (int i = 0; i < 5; i++) {
+			assertNotNull(cache.get("a"));
+			assertNotNull(cache.get("b"));
+		}
+
+		// the key read once doesn't displace the hot ones
+		assertNull(cache.get("c"));
+		cache.put("c", 1, () -> true);
+		assertNull(cache.get("c"));
+		assertEquals(2, cache.size());
+
+		// the key read more frequently than the least recently used one evicts it
+		for (int i = 0; i < 10; i++)
+			cache.get("c");
+		cache.get("b");
+		cache.put("c", 1, () -> true);
+		assertEquals(Integer.valueOf(1), cache.get("c"));
+		assertNull(cache.get("a"));
+		assertNotNull(cache.get("b"));
+
+		// the value isn't cached unless the condition is met
+		cache.remove("c");
+		cache.put("c", 1, () -> false);
+		assertNull(cache.get("c"));
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws InterruptedException {
+		ObjectCache<Integer, Integer> cache = new ObjectCache<>(64);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			int seed = t;
+			threads[t] = new Thread(() -> {
+				Random random = new Random(seed);
+				try {
+					for (int i = 0; i < 100000; i++) {
+						// skewed keys, a few of them are hot
+						int key = random.nextInt(1 + random.nextInt(1000));
+						Integer value = cache.get(key);
+						if (value == null)
+							cache.put(key, -key, () -> true);
+						else
+							assertEquals(-key, value.intValue());
+						if (i % 1000 == 0)
+							cache.remove(key);
+					}
+				} catch (Throwable exc) {
+					failure.compareAndSet(null, exc);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertNull(failure.get());
+		assertTrue(cache.size() <= 64);
+	}
+
+}
@@ -0,0 +1,62 @@
+package task.store;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RingBufferTest {
+
+	@Test
+	public void testProducersAndConsumer() throws InterruptedException {
+		RingBuffer<long[]> ring = new RingBuffer<>(64, () -> new long[2]);
+		int producers = 4;
+		int values = 10000;
+		Thread[] threads = new Thread[producers];
+		for (int t = 0; t < producers; t++) {
+			int producer = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < values; i++) {
+					long sequence = ring.claim();
+					long[] entry = ring.get(sequence);
+					entry[0] = producer;
+					entry[1] = i;
+					ring.publish(sequence);
+				}
+			});
+			threads[t].start();
+		}
+
+		// values of every producer are taken in the order they are published
+		long[] last = new long[producers];
+		Arrays.fill(last, -1);
+		List<long[]> batch = new ArrayList<>();
+		int taken = 0;
+		while (taken < producers * values) {
+			int count = ring.drain(batch, 16);
+			if (count == 0) {
+				ring.await(10);
+				continue;
+			}
+			for (long[] entry : batch) {
+				assertEquals(last[(int) entry[0]] + 1, entry[1]);
+				last[(int) entry[0]] = entry[1];
+			}
+			ring.release(count);
+			batch.clear();
+			taken += count;
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertTrue(ring.isDrained());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCapacity() {
+		new RingBuffer<>(100, Object::new);
+	}
+
+}
@@ -2,20 +2,51 @@ package task.store;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 
 import org.junit.AfterClass;
+import org.junit.Assume;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import task.store.testobjects.Car;
+import task.store.testobjects.CarCodec;
 
 public class StoreTest {
 
 	public static final String path = "tmp/";
 	public static Store<Car> store;
 
+	// directories of the stores created by the tests, they are deleted after every test even if it fails
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@BeforeClass
 	public static void init() throws ClassNotFoundException, IOException {
 		File dir = new File(path);
@@ -47,6 +78,752 @@ public class StoreTest {
 		assertNotNull(savedCard);
 	}
 
+	@Test
+	public void testCustomCodec() {
+		File dir = newStoreDir();
+		Store<Car> s = new Store<>(dir.getPath(), new CarCodec());
+		s.append("1", new Car("Lada", "Niva", 1977));
+		s.close();
+
+		s = new Store<>(dir.getPath(), new CarCodec());
+		Car savedCar = s.get("1");
+		s.close();
+		assertEquals("Lada", savedCar.brand);
+		assertEquals("Niva", savedCar.model);
+		assertEquals(1977, savedCar.year);
+	}
+
+	@Test
+	public void testLegacyIndexMigration() throws IOException {
+		File dir = newStoreDir();
+		byte[] value = serialize(new Car("Volvo", "XC90", 2015));
+		try (FileOutputStream data = new FileOutputStream(new File(dir, "store_0000.dat"));
+				FileOutputStream index = new FileOutputStream(new File(dir, "store.ind"))) {
+			data.write(value);
+			byte[] indexBytes = serialize(new Index(false, 0, 0, value.length, 0, "1"));
+			index.write(ByteBuffer.allocate(4).putInt(indexBytes.length).array());
+			index.write(indexBytes);
+		}
+
+		Store<Car> s = new Store<>(dir.getPath());
+		assertEquals("XC90", s.get("1").model);
+		assertTrue(s.remove("1"));
+		s.close();
+
+		s = new Store<>(dir.getPath());
+		assertNull(s.get("1"));
+		s.close();
+	}
+
+	@Test
+	public void testCompression() {
+		File dir = newStoreDir();
+		String model = "Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio";
+		Compression[] compressions = Compression.values();
+		for (Compression compression : compressions) {
+			Store<Car> s = new Store<>(dir.getPath(), new StoreConfig().setCompression(compression));
+			s.append(compression.name(), new Car("Kia", model, 2016));
+			s.close();
+		}
+
+		Store<Car> s = new Store<>(dir.getPath());
+		for (Compression compression : compressions)
+			assertEquals(model, s.get(compression.name()).model);
+		s.close();
+	}
+
+	@Test
+	public void testClassDictionary() {
+		File dir = newStoreDir();
+		Store<Car> s = new Store<>(dir.getPath());
+		s.append("plain", new Car("Kia", "Rio", 2016));
+		s.close();
+		long plainSize = new File(dir, "store_0000.dat").length();
+
+		s = new Store<>(dir.getPath(), new StoreConfig().setClassDictionary(true));
+		s.append("1", new Car("Kia", "Ceed", 2018));
+		s.append("2", new Car("Kia", "Soul", 2019));
+		s.close();
+		long dictionarySize = new File(dir, "store_0000.dat").length() - plainSize;
+		assertTrue(dictionarySize < plainSize);
+
+		// the dictionary is picked up without the explicit setting
+		s = new Store<>(dir.getPath());
+		assertEquals("Rio", s.get("plain").model);
+		assertEquals("Ceed", s.get("1").model);
+		assertEquals("Soul", s.get("2").model);
+		s.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testClassDictionaryWithCustomCodec() {
+		new Store<Car>("tmp/", new CarCodec(), new StoreConfig().setClassDictionary(true));
+	}
+
+	@Test
+	public void testRawRead() {
+		File dir = newStoreDir();
+		CarCodec codec = new CarCodec();
+		Store<Car> s = new Store<>(dir.getPath(), codec, new StoreConfig().setCompression(Compression.LZ));
+		s.append("1", new Car("Kia", "Rio", 2016));
+		s.append("2", new Car("Kia", "Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio", 2016));
+		assertNull(s.getRaw("3"));
+		assertEquals(-1, s.readInto("3", ByteBuffer.allocate(100)));
+
+		ByteBuffer raw = s.getRaw("1");
+		assertTrue(raw.isReadOnly());
+		assertEquals("Rio", codec.decode(raw).model);
+
+		for (String key : new String[] { "1", "2" }) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(100);
+			buffer.position(10);
+			int size = s.readInto(key, buffer);
+			assertEquals(10 + size, buffer.position());
+			buffer.flip().position(10);
+			assertEquals(2016, codec.decode(buffer).year);
+		}
+		try {
+			s.readInto("2", ByteBuffer.allocate(4));
+			fail();
+		} catch (BufferOverflowException exc) {
+			// expected
+		} finally {
+			s.close();
+		}
+	}
+
+	@Test
+	public void testAppendAllocation() {
+		java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+
+		File dir = newStoreDir();
+		Store<byte[]> s = new Store<>(dir.getPath(), new Codec<byte[]>() {
+
+			@Override
+			public void encode(byte[] value, OutputStream out) throws IOException {
+				out.write(value);
+			}
+
+			@Override
+			public byte[] decode(ByteBuffer buffer) {
+				byte[] value = new byte[buffer.remaining()];
+				buffer.get(value);
+				return value;
+			}
+		});
+		int n = 20000;
+		String[] keys = new String[2 * n];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = s.generateKey();
+		byte[] value = new byte[100];
+
+		// warm up buffers and JIT
+		for (int i = 0; i < n; i++)
+			s.append(keys[i], value);
+
+		long threadId = Thread.currentThread().getId();
+		long allocated = allocationBean.getThreadAllocatedBytes(threadId);
+		for (int i = n; i < keys.length; i++)
+			s.append(keys[i], value);
+		allocated = allocationBean.getThreadAllocatedBytes(threadId) - allocated;
+		s.close();
+
+		// the index entry and its map node, rolling data files over and growing the map are amortized
+		long perAppend = allocated / n;
+		assertTrue("Allocated " + perAppend + " bytes per append", perAppend < 200);
+	}
+
+	@Test
+	public void testProjection() {
+		File dir = newStoreDir();
+		FieldTableCodec<Car> codec = new FieldTableCodec.Builder<Car>()
+				.field("brand", Codecs.STRING, car -> car.brand)
+				.field("model", Codecs.STRING, car -> car.model)
+				.field("year", Codecs.INT, car -> car.year)
+				.build(fields -> new Car((String) fields[0], (String) fields[1], (Integer) fields[2]));
+		String model = "Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio Rio";
+		Store<Car> s = new Store<>(dir.getPath(), codec);
+		s.append("1", new Car("Kia", null, 2016));
+		s.close();
+		s = new Store<>(dir.getPath(), codec, new StoreConfig().setCompression(Compression.LZ));
+		s.append("2", new Car("Kia", model, 2017));
+
+		Map<String, Object> fields = s.get("1", FieldProjection.of("year", "model"));
+		assertEquals(Arrays.asList("year", "model"), new ArrayList<>(fields.keySet()));
+		assertEquals(2016, fields.get("year"));
+		assertNull(fields.get("model"));
+		assertEquals(model, s.get("2", FieldProjection.of("model")).get("model"));
+		assertNull(s.get("3", FieldProjection.of("model")));
+		assertEquals(2017, s.get("2").year);
+		try {
+			s.get("1", FieldProjection.of("color"));
+			fail();
+		} catch (IllegalArgumentException exc) {
+			// expected
+		} finally {
+			s.close();
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testProjectionWithoutFieldTable() {
+		store.get("1", FieldProjection.of("model"));
+	}
+
+	@Test
+	public void testDictionaryCompression() {
+		File dir = newStoreDir();
+		String[] brands = { "Kia", "Hyundai", "Toyota", "Volkswagen", "Renault" };
+		String[] models = { "Rio", "Solaris", "Camry", "Polo", "Logan", "Sandero" };
+		long[] sizes = new long[2];
+		Compression[] compressions = { Compression.DEFLATE, Compression.DICTIONARY };
+		for (int c = 0; c < compressions.length; c++) {
+			Store<Car> s = new Store<>(dir.getPath(), new StoreConfig().setCompression(compressions[c]));
+			for (int i = 0; i < 3000; i++)
+				s.append(String.valueOf(i), new Car(brands[i % brands.length], models[i % models.length], 2000 + i % 20));
+			s.close();
+			sizes[c] = new File(dir, "store_0000.dat").length();
+			assertEquals(compressions[c] == Compression.DICTIONARY, new File(dir, "store.dic").exists());
+			if (c == 0)
+				deleteDirContent(dir);
+		}
+		assertTrue(sizes[1] < sizes[0] / 2);
+
+		// values compressed before and after training are readable, relocation retrains the dictionary
+		Store<Car> s = new Store<>(dir.getPath(), new StoreConfig().setCompression(Compression.DICTIONARY).setLoadFactor(0.9f));
+		long dictionaryModified = new File(dir, "store.dic").lastModified();
+		for (int i = 0; i < 400; i++)
+			assertTrue(s.remove(String.valueOf(i)));
+		for (int i = 400; i < 3000; i++)
+			assertEquals(2000 + i % 20, s.get(String.valueOf(i)).year);
+		s.close();
+		assertTrue(new File(dir, "store.dic").lastModified() >= dictionaryModified);
+		assertFalse(new File(dir, "store_copy.dic").exists());
+
+		// the dictionary is dropped once the values are recompressed without it
+		s = new Store<>(dir.getPath(), new StoreConfig().setCompression(Compression.LZ).setLoadFactor(0.9f));
+		for (int i = 400; i < 800; i++)
+			assertTrue(s.remove(String.valueOf(i)));
+		assertEquals(2000 + 999 % 20, s.get("999").year);
+		s.close();
+		assertFalse(new File(dir, "store.dic").exists());
+	}
+
+	@Test
+	public void testFixedIndexMigration() throws IOException {
+		File dir = newStoreDir();
+		byte[] value = serialize(new Car("Volvo", "XC90", 2015));
+		String[] keys = { "1", UUID.randomUUID().toString() };
+		ByteBuffer index = ByteBuffer.allocate(1 << 10).putInt(IndexFormat.MAGIC).put(IndexFormat.VERSION_1);
+		try (FileOutputStream data = new FileOutputStream(new File(dir, "store_0000.dat"))) {
+			for (int i = 0; i < keys.length; i++) {
+				data.write(value);
+				byte[] key = keys[i].getBytes(StandardCharsets.UTF_8);
+				index.put((byte) 0).putInt(0).putLong(i * value.length).putInt(value.length).putShort((short) key.length).put(key);
+			}
+		}
+		try (FileOutputStream out = new FileOutputStream(new File(dir, "store.ind"))) {
+			out.write(index.array(), 0, index.position());
+		}
+		long fixedSize = new File(dir, "store.ind").length();
+
+		Store<Car> s = new Store<>(dir.getPath());
+		assertTrue(new File(dir, "store.ind").length() < fixedSize);
+		assertEquals("XC90", s.get("1").model);
+		assertEquals("XC90", s.get(keys[1]).model);
+		s.append("2", new Car("Volvo", "XC60", 2017));
+		assertTrue(s.remove(keys[1]));
+		s.close();
+
+		s = new Store<>(dir.getPath(), 0.1f);
+		assertEquals("XC90", s.get("1").model);
+		assertNull(s.get(keys[1]));
+		assertEquals("XC60", s.get("2").model);
+		s.close();
+	}
+
+	@Test
+	public void testBinaryStore() throws IOException {
+		File dir = newStoreDir();
+		BinaryStore s = new BinaryStore(dir.getPath());
+		byte[] first = { 1, 2, 3 };
+		byte[] second = "opaque blob".getBytes(StandardCharsets.UTF_8);
+		s.append("1", first);
+		s.append("2", ByteBuffer.wrap(second));
+		s.append("3", new byte[0]);
+		assertArrayEquals(first, s.get("1"));
+		assertArrayEquals(second, s.get("2"));
+		assertArrayEquals(new byte[0], s.get("3"));
+		assertNull(s.get("4"));
+		s.close();
+
+		// the bytes are stored verbatim
+		byte[] data = Files.readAllBytes(new File(dir, "store_0000.dat").toPath());
+		assertEquals("\u0001\u0002\u0003opaque blob", new String(data, StandardCharsets.UTF_8));
+
+		s = new BinaryStore(dir.getPath(), new StoreConfig().setCompression(Compression.DEFLATE));
+		assertArrayEquals(second, s.get("2"));
+		byte[] repetitive = new byte[1000];
+		s.append("4", repetitive);
+		assertArrayEquals(repetitive, s.get("4"));
+		ByteBuffer dst = ByteBuffer.allocate(16);
+		assertEquals(second.length, s.readInto("2", dst));
+		assertTrue(s.remove("1"));
+		s.close();
+	}
+
+	@Test
+	public void testAppendBatch() {
+		File dir = newStoreDir();
+		for (Compression compression : new Compression[] { Compression.NONE, Compression.LZ }) {
+			Store<Car> s = new Store<>(dir.getPath(), new StoreConfig().setCompression(compression));
+			s.append("single", new Car("Volvo", "XC60", 2017));
+			Map<String, Car> cars = new LinkedHashMap<>();
+			for (int i = 0; i < 10000; i++)
+				cars.put(s.generateKey(), new Car("Volvo", "XC90 " + i, 2000 + i % 20));
+			s.appendAll(cars);
+			// nothing is appended if a key exists
+			try {
+				s.appendBatch(Arrays.asList(new SimpleEntry<>("new", new Car("Volvo", "S60", 2012)),
+						new SimpleEntry<>("single", new Car("Volvo", "S90", 2016))));
+				fail();
+			} catch (IllegalArgumentException exc) {
+			}
+			assertNull(s.get("new"));
+			// nor if a key is too long, the following appends are readable after the reopening
+			char[] longKey = new char[70000];
+			Arrays.fill(longKey, 'k');
+			try {
+				s.appendBatch(Arrays.asList(new SimpleEntry<>("new", new Car("Volvo", "S60", 2012)),
+						new SimpleEntry<>(new String(longKey), new Car("Volvo", "S90", 2016))));
+				fail();
+			} catch (IllegalArgumentException exc) {
+			}
+			assertNull(s.get("new"));
+			s.append("last", new Car("Volvo", "V40", 2014));
+			s.close();
+
+			// several data files are written by the batch
+			if (compression == Compression.NONE)
+				assertTrue(new File(dir, "store_0001.dat").exists());
+			s = new Store<>(dir.getPath());
+			assertEquals("XC60", s.get("single").model);
+			assertEquals("V40", s.get("last").model);
+			for (Map.Entry<String, Car> entry : cars.entrySet())
+				assertEquals(entry.getValue().model, s.get(entry.getKey()).model);
+			s.close();
+			deleteDirContent(dir);
+		}
+	}
+
+	@Test
+	public void testDurabilityPolicy() {
+		File dir = newStoreDir();
+		DurabilityPolicy[] policies = { DurabilityPolicy.none(), DurabilityPolicy.everyAppend(),
+				DurabilityPolicy.everyMillis(1), DurabilityPolicy.everyBytes(100) };
+		for (DurabilityPolicy policy : policies) {
+			// the dictionaries are forced along with the values referring to them
+			Store<Car> s = new Store<>(dir.getPath(), new StoreConfig().setDurabilityPolicy(policy)
+					.setClassDictionary(true).setCompression(Compression.DICTIONARY));
+			for (int i = 0; i < 100; i++)
+				s.append(String.valueOf(i), new Car("Volvo", "XC90 " + i, 2015));
+			Map<String, Car> cars = new LinkedHashMap<>();
+			cars.put("batch", new Car("Volvo", "XC60", 2017));
+			s.appendAll(cars);
+			for (int i = 0; i < 50; i++)
+				assertTrue(s.remove(String.valueOf(i)));
+			s.close();
+
+			s = new Store<>(dir.getPath());
+			assertNull(s.get("0"));
+			assertEquals("XC90 99", s.get("99").model);
+			assertEquals("XC60", s.get("batch").model);
+			s.close();
+			deleteDirContent(dir);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidDurabilityPolicy() {
+		DurabilityPolicy.everyMillis(0);
+	}
+
+	@Test
+	public void testAppendAsync() throws Exception {
+		File dir = newStoreDir();
+		Store<Car> s = new Store<>(dir.getPath(), new StoreConfig().setDurabilityPolicy(DurabilityPolicy.everyAppend()));
+		s.append("existing", new Car("Volvo", "XC60", 2017));
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		List<CompletableFuture<Void>> rejected = new ArrayList<>();
+		char[] longKey = new char[70000];
+		Arrays.fill(longKey, 'k');
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			int thread = t;
+			List<CompletableFuture<Void>> threadFutures = new ArrayList<>();
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					threadFutures.add(s.appendAsync(thread + "_" + i, new Car("Volvo", "XC90 " + i, 2015)));
+					// the batch with the key too long fails, its other values are appended
+					if (thread == 0 && i % 100 == 0)
+						rejected.add(s.appendAsync(new String(longKey), new Car("Volvo", "S90", 2016)));
+				}
+				synchronized (futures) {
+					futures.addAll(threadFutures);
+				}
+			});
+			threads[t].start();
+		}
+		CompletableFuture<Void> duplicate = s.appendAsync("existing", new Car("Volvo", "S60", 2012));
+		for (Thread thread : threads)
+			thread.join();
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+		try {
+			duplicate.get();
+			fail();
+		} catch (ExecutionException exc) {
+			assertTrue(exc.getCause() instanceof IllegalArgumentException);
+		}
+		assertEquals("XC90 999", s.get("3_999").model);
+		assertEquals("XC60", s.get("existing").model);
+		for (CompletableFuture<Void> future : rejected)
+			assertTrue(future.isCompletedExceptionally());
+
+		// the queued values are appended on close
+		CompletableFuture<Void> last = s.appendAsync("last", new Car("Volvo", "V40", 2014));
+		s.close();
+		assertTrue(last.isDone());
+		assertTrue(s.appendAsync("closed", new Car("Volvo", "V40", 2014)).isCompletedExceptionally());
+
+		Store<Car> reopened = new Store<>(dir.getPath());
+		for (int t = 0; t < threads.length; t++) {
+			for (int i = 0; i < 1000; i++)
+				assertEquals("XC90 " + i, reopened.get(t + "_" + i).model);
+		}
+		assertEquals("V40", reopened.get("last").model);
+		reopened.close();
+	}
+
+	@Test
+	public void testAppendAsyncUnserializableValue() throws Exception {
+		File dir = newStoreDir();
+		Store<Serializable> s = new Store<>(dir.getPath());
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int i = 0; i < 2000; i++)
+			futures.add(s.appendAsync(String.valueOf(i), new Car("Volvo", "XC90 " + i, 2015)));
+		// the value can't be serialized, only its future fails
+		CompletableFuture<Void> failed = s.appendAsync("unserializable", new Object[] { new Object() });
+		for (int i = 2000; i < 4000; i++)
+			futures.add(s.appendAsync(String.valueOf(i), new Car("Volvo", "XC90 " + i, 2015)));
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+		try {
+			failed.get();
+			fail();
+		} catch (ExecutionException exc) {
+		}
+		s.close();
+
+		s = new Store<>(dir.getPath());
+		assertNull(s.get("unserializable"));
+		for (int i = 0; i < 4000; i++)
+			assertEquals("XC90 " + i, ((Car) s.get(String.valueOf(i))).model);
+		s.close();
+	}
+
+	@Test
+	public void testWriteBuffer() throws InterruptedException {
+		File dir = newStoreDir();
+		File dataFile = new File(dir, "store_0000.dat");
+		Store<Car> s = new Store<>(dir.getPath(), new StoreConfig().setWriteBufferSize(1 << 16).setWriteBufferDelay(60000));
+		s.append("1", new Car("Volvo", "XC90", 2015));
+		s.append("2", new Car("Volvo", "XC60", 2017));
+		// the values are served from the buffer
+		assertEquals(0, dataFile.length());
+		assertEquals("XC90", s.get("1").model);
+		assertEquals("XC60", s.get("2").model);
+		assertNotNull(s.getRaw("2"));
+		assertTrue(s.remove("1"));
+		Map<String, Car> cars = new LinkedHashMap<>();
+		for (int i = 0; i < 10000; i++)
+			cars.put("batch" + i, new Car("Volvo", "S60 " + i, 2012));
+		s.appendAll(cars);
+		for (int i = 0; i < 10000; i++)
+			s.append(String.valueOf(i + 3), new Car("Volvo", "V40 " + i, 2014));
+		assertEquals("V40 9999", s.get("10002").model);
+		assertEquals("S60 0", s.get("batch0").model);
+		s.close();
+
+		s = new Store<>(dir.getPath(), new StoreConfig().setWriteBufferSize(1 << 10).setWriteBufferDelay(10));
+		assertNull(s.get("1"));
+		assertEquals("XC60", s.get("2").model);
+		assertEquals("S60 9999", s.get("batch9999").model);
+		assertEquals("V40 0", s.get("3").model);
+		// the buffer is flushed on expiry of the delay
+		File lastFile = new File(dir, "store_000" + (dir.list().length - 2) + ".dat");
+		long length = lastFile.length();
+		s.append("last", new Car("Volvo", "XC40", 2018));
+		for (int i = 0; i < 100 && lastFile.length() == length; i++)
+			Thread.sleep(10);
+		assertTrue(lastFile.length() > length);
+		s.close();
+	}
+
+	@Test
+	public void testMemoryMapping() {
+		File dir = newStoreDir();
+		StoreConfig config = new StoreConfig().setMemoryMapping(true).setSegmentSize(1 << 14);
+		Store<Car> s = new Store<>(dir.getPath(), config);
+		for (int i = 0; i < 3000; i++)
+			s.append(String.valueOf(i), new Car("Volvo", "XC90 " + i, 2015));
+		assertTrue(new File(dir, "store_0002.dat").exists());
+		// the first values are read from the mapped files, the last ones from the channel
+		for (int i = 0; i < 3000; i++)
+			assertEquals("XC90 " + i, s.get(String.valueOf(i)).model);
+		ByteBuffer raw = ByteBuffer.allocate(1 << 10);
+		assertTrue(s.readInto("0", raw) > 0);
+		for (int i = 0; i < 3000; i += 2)
+			assertTrue(s.remove(String.valueOf(i)));
+		assertEquals("XC90 1", s.get("1").model);
+		s.close();
+
+		s = new Store<>(dir.getPath(), config.setCompression(Compression.LZ));
+		for (int i = 1; i < 3000; i += 2)
+			assertEquals("XC90 " + i, s.get(String.valueOf(i)).model);
+		assertNull(s.get("0"));
+		s.close();
+	}
+
+	@Test
+	public void testBlockCache() {
+		File dir = newStoreDir();
+		Store<Car> s = new Store<>(dir.getPath(), new StoreConfig().setBlockCacheSize(1 << 14).setSegmentSize(1 << 14));
+		for (int i = 0; i < 3000; i++)
+			s.append(String.valueOf(i), new Car("Volvo", "XC90 " + i, 2015));
+		// the cache is smaller than the completed files, the blocks are evicted
+		for (int round = 0; round < 2; round++) {
+			for (int i = 0; i < 3000; i++)
+				assertEquals("XC90 " + i, s.get(String.valueOf(i)).model);
+		}
+		for (int i = 0; i < 3000; i += 2)
+			assertTrue(s.remove(String.valueOf(i)));
+		for (int i = 1; i < 3000; i += 2)
+			assertEquals("XC90 " + i, s.get(String.valueOf(i)).model);
+		s.close();
+		try {
+			new Store<Car>(dir.getPath(), new StoreConfig().setBlockCacheSize(-1));
+			fail();
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	@Test
+	public void testObjectCache() {
+		File dir = newStoreDir();
+		Store<Car> s = new Store<>(dir.getPath(), new StoreConfig().setObjectCacheSize(100).setLoadFactor(0.9f));
+		for (int i = 0; i < 1000; i++)
+			s.append(String.valueOf(i), new Car("Volvo", "XC90 " + i, 2015));
+		Car car = s.get("1");
+		assertSame(car, s.get("1"));
+		// the removal invalidates the cached value
+		assertTrue(s.remove("1"));
+		assertNull(s.get("1"));
+		// the relocation evicts all the values
+		car = s.get("2");
+		for (int i = 3; i < 200; i++)
+			assertTrue(s.remove(String.valueOf(i)));
+		assertNotSame(car, s.get("2"));
+		assertEquals("XC90 2", s.get("2").model);
+		s.close();
+	}
+
+	@Test
+	public void testGetAll() {
+		File dir = newStoreDir();
+		Store<Car> s = new Store<>(dir.getPath(), new StoreConfig().setCompression(Compression.LZ)
+				.setWriteBufferSize(1 << 12).setSegmentSize(1 << 14));
+		for (int i = 0; i < 3000; i++)
+			s.append(String.valueOf(i), new Car("Volvo", "XC90 " + i, 2015));
+		assertTrue(s.remove("7"));
+		List<String> keys = new ArrayList<>();
+		// the keys in the reversed order, the last values are still in the write buffer
+		for (int i = 2999; i >= 0; i--)
+			keys.add(String.valueOf(i));
+		keys.add("missing");
+		Map<String, Car> cars = s.getAll(keys);
+		assertEquals(2999, cars.size());
+		for (int i = 0; i < 3000; i++) {
+			if (i != 7)
+				assertEquals("XC90 " + i, cars.get(String.valueOf(i)).model);
+		}
+		assertFalse(cars.containsKey("7"));
+		assertTrue(s.getAll(Collections.singletonList("missing")).isEmpty());
+		s.close();
+	}
+
+	@Test
+	public void testConcurrentReads() throws InterruptedException {
+		File dir = newStoreDir();
+		Store<Car> s = new Store<>(dir.getPath(), new StoreConfig().setLoadFactor(0.9f)
+				.setWriteBufferSize(1 << 12).setSegmentSize(1 << 16));
+		for (int i = 0; i < 1000; i++)
+			s.append(String.valueOf(i), new Car("Volvo", "XC90 " + i, 2015));
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		AtomicBoolean writing = new AtomicBoolean(true);
+		List<Thread> readers = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			Thread reader = new Thread(() -> {
+				try {
+					for (int i = 0; writing.get(); i = (i + 7) % 1000)
+						assertEquals("XC90 " + i, s.get(String.valueOf(i)).model);
+				} catch (Throwable exc) {
+					failure.compareAndSet(null, exc);
+				}
+			});
+			reader.start();
+			readers.add(reader);
+		}
+		// the removals relocate the files under the readers
+		for (int i = 0; i < 5000; i++) {
+			s.append("w" + i, new Car("Volvo", "S60 " + i, 2012));
+			if (i % 2 == 0)
+				s.remove("w" + i);
+		}
+		writing.set(false);
+		for (Thread reader : readers)
+			reader.join();
+		assertNull(failure.get());
+		assertEquals("S60 4999", s.get("w4999").model);
+		s.close();
+	}
+
+	@Test
+	public void testSegmentPreallocation() {
+		File dir = newStoreDir();
+		int segmentSize = 1 << 14;
+		StoreConfig config = new StoreConfig().setSegmentSize(segmentSize).setPreallocation(true);
+		Store<Car> s = new Store<>(dir.getPath(), config);
+		assertEquals(segmentSize, new File(dir, "store_0000.dat").length());
+		for (int i = 0; i < 1000; i++)
+			s.append(String.valueOf(i), new Car("Volvo", "XC90 " + i, 2015));
+		File[] dataFiles = dir.listFiles((d, name) -> name.endsWith(".dat"));
+		Arrays.sort(dataFiles);
+		assertTrue(dataFiles.length > 5);
+		// completed files are trimmed, the last one is preallocated
+		for (int i = 0; i < dataFiles.length - 1; i++) {
+			assertTrue(dataFiles[i].length() > segmentSize);
+			assertTrue(dataFiles[i].length() < segmentSize + 1000);
+		}
+		assertEquals(segmentSize, dataFiles[dataFiles.length - 1].length());
+		s.close();
+		long trimmed = dataFiles[dataFiles.length - 1].length();
+		assertTrue(trimmed < segmentSize);
+
+		s = new Store<>(dir.getPath(), config);
+		s.append("last", new Car("Volvo", "XC60", 2017));
+		for (int i = 0; i < 1000; i++)
+			assertEquals("XC90 " + i, s.get(String.valueOf(i)).model);
+		s.close();
+
+		// the appended value follows the last one
+		s = new Store<>(dir.getPath());
+		assertEquals("XC60", s.get("last").model);
+		assertEquals("XC90 999", s.get("999").model);
+		s.close();
+		assertTrue(dataFiles[dataFiles.length - 1].length() > trimmed);
+	}
+
+	@Test
+	public void testParallelEncoding() throws Exception {
+		File dir = newStoreDir();
+		Codec<byte[]> codec = new Codec<byte[]>() {
+
+			@Override
+			public void encode(byte[] value, OutputStream out) throws IOException {
+				if (value.length == 0)
+					throw new IOException("Empty value");
+				out.write(value);
+			}
+
+			@Override
+			public byte[] decode(ByteBuffer buffer) {
+				byte[] value = new byte[buffer.remaining()];
+				buffer.get(value);
+				return value;
+			}
+		};
+		Store<byte[]> s = new Store<>(dir.getPath(), codec, new StoreConfig().setEncodingThreads(4));
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (long i = 0; i < 10000; i++)
+			futures.add(s.appendAsync(String.valueOf(i), ByteBuffer.allocate(8).putLong(i).array()));
+		CompletableFuture<Void> failed = s.appendAsync("empty", new byte[0]);
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+		try {
+			failed.get();
+			fail();
+		} catch (ExecutionException exc) {
+		}
+		assertNull(s.get("empty"));
+		s.close();
+
+		// the values are written in the order of appending
+		ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(new File(dir, "store_0000.dat").toPath()));
+		for (long i = 0; i < 10000; i++)
+			assertEquals(i, data.getLong());
+	}
+
+	@Test
+	public void testBulkLoader() {
+		File dir = newStoreDir();
+		StoreConfig config = new StoreConfig().setSegmentSize(1 << 16).setCompression(Compression.LZ);
+		BulkLoader<Car> loader = new BulkLoader<>(dir.getPath(), new JavaSerializationCodec<>(), config);
+		loader.load(IntStream.range(0, 20000)
+				.mapToObj(i -> new SimpleEntry<>(String.valueOf(i), new Car("Volvo", "XC90 " + i, 2000 + i % 20))));
+		try {
+			loader.load(Collections.singletonMap("0", new Car("Volvo", "S60", 2012)).entrySet().iterator());
+			fail();
+		} catch (IllegalArgumentException exc) {
+		}
+		Store<Car> s = loader.open();
+		assertTrue(new File(dir, "store_0001.dat").exists());
+		for (int i = 0; i < 20000; i++)
+			assertEquals("XC90 " + i, s.get(String.valueOf(i)).model);
+		s.append("last", new Car("Volvo", "V40", 2014));
+		assertTrue(s.remove("0"));
+		s.close();
+
+		s = new Store<>(dir.getPath());
+		assertNull(s.get("0"));
+		assertEquals("V40", s.get("last").model);
+		assertEquals("XC90 19999", s.get("19999").model);
+		s.close();
+
+		// the directory contains the Store already
+		try {
+			new BulkLoader<Car>(dir.getPath());
+			fail();
+		} catch (IllegalArgumentException exc) {
+		}
+
+		// the key too long is rejected before its value is buffered, the data file holds the loaded value only
+		dir = newStoreDir();
+		loader = new BulkLoader<>(dir.getPath());
+		char[] longKey = new char[70000];
+		Arrays.fill(longKey, 'k');
+		try {
+			loader.load(Collections.singletonMap(new String(longKey), new Car("Volvo", "S60", 2012)).entrySet().iterator());
+			fail();
+		} catch (IllegalArgumentException exc) {
+		}
+		loader.load(Collections.singletonMap("1", new Car("Volvo", "XC60", 2017)).entrySet().iterator());
+		s = loader.open();
+		assertEquals("XC60", s.get("1").model);
+		assertEquals(s.getRaw("1").remaining(), new File(dir, "store_0000.dat").length());
+		s.close();
+	}
+
 	@Test
 	public void testGenerateKey() {
 		assertNotNull(store.generateKey());
@@ -92,6 +869,22 @@ public class StoreTest {
 		store.close();
 	}
 
+	private static byte[] serialize(Object obj) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		oos.writeObject(obj);
+		oos.close();
+		return baos.toByteArray();
+	}
+
+	private File newStoreDir() {
+		try {
+			return folder.newFolder();
+		} catch (IOException exc) {
+			throw new RuntimeException(exc);
+		}
+	}
+
 	private static void deleteDirContent(File dir) {
 		for (File f : dir.listFiles()) {
 			assertTrue(f.delete());
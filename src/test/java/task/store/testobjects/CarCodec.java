@@ -0,0 +1,35 @@
+package task.store.testobjects;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import task.store.Codec;
+
+public class CarCodec implements Codec<Car> {
+
+	@Override
+	public void encode(Car value, OutputStream out) throws IOException {
+		DataOutputStream dos = new DataOutputStream(out);
+		dos.writeUTF(value.brand);
+		dos.writeUTF(value.model);
+		dos.writeInt(value.year);
+		dos.flush();
+	}
+
+	@Override
+	public Car decode(ByteBuffer buffer) {
+		String brand = readUTF(buffer);
+		String model = readUTF(buffer);
+		return new Car(brand, model, buffer.getInt());
+	}
+
+	private static String readUTF(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}